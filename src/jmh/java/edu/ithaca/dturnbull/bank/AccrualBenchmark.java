@@ -0,0 +1,92 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One night's interest on every account of a Bank of accountCount accounts,
+ * with Accrual on a ForkJoinPool of parallelism threads, and with the loop it
+ * replaces: BankAccount.deposit of each account's interest as a double. The
+ * sweep time is the score; accounts/sec are printed after each iteration.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class AccrualBenchmark {
+
+    // 5% a year, for one day
+    private static final long DAILY_RATE = 50_000_000 / 365;
+
+    @Param({ "1000000", "10000000" })
+    int accountCount;
+
+    @Param({ "1", "4" })
+    int parallelism;
+
+    Bank bank;
+    ForkJoinPool pool;
+    long startNanos;
+
+    @Setup(Level.Trial)
+    public void open() {
+        bank = new Bank(64, accountCount);
+        Random random = new Random(42);
+        for (int i = 0; i < accountCount; i++) {
+            bank.openAccountCents("user" + i + "@bank.com", random.nextInt(10_000_000));
+        }
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        pool.shutdown();
+    }
+
+    @Setup(Level.Iteration)
+    public void start() {
+        startNanos = System.nanoTime();
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("accounts/sec: %.0f%n", accountCount / seconds);
+    }
+
+    @Benchmark
+    public long accrual() throws InterruptedException {
+        Accrual accrual = new Accrual(bank, Accrual.interest(DAILY_RATE), pool);
+        accrual.run(Durability.NONE);
+        return accrual.netCents();
+    }
+
+    @Benchmark
+    public long loop() {
+        long[] net = new long[1];
+        bank.forEach(account -> {
+            long interest = Money.applyRate(account.getBalanceCents(), DAILY_RATE);
+            account.deposit(Money.toAmount(interest));
+            net[0] += interest;
+        });
+        return net[0];
+    }
+
+}
@@ -0,0 +1,56 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the fixed-point isAmountValid with the old Double.toString/split
+ * version. Run with -prof gc to see the allocation difference.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AmountValidationBenchmark {
+
+    @Param({ "200.01", "10.001", "20.0", "-0.01" })
+    double amount;
+
+    @Benchmark
+    public boolean fixedPoint() {
+        return BankAccount.isAmountValid(amount);
+    }
+
+    @Benchmark
+    public boolean legacyString() {
+        return legacyIsAmountValid(amount);
+    }
+
+    // The string based check isAmountValid used before Money existed
+    static boolean legacyIsAmountValid(double amount) {
+        if (amount < 0) {
+            return false;
+        }
+        String amountString = Double.toString(amount);
+        if (amountString.contains(".")) {
+            String[] parts = amountString.split("\\.");
+            if (parts[1].length() > 2) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
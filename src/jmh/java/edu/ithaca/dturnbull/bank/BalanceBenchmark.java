@@ -0,0 +1,84 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of a deposit followed by a withdrawal on the long cents balance,
+ * next to the double balance BankAccount used to keep.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BalanceBenchmark {
+
+    // The double balance arithmetic BankAccount used before Money
+    static class DoubleAccount {
+        double balance;
+
+        void deposit(double amount) {
+            if (AmountValidationBenchmark.legacyIsAmountValid(amount)) {
+                balance += amount;
+            } else {
+                throw new IllegalArgumentException("Invalid deposit amount");
+            }
+        }
+
+        void withdraw(double amount) throws InsufficientFundsException {
+            if (AmountValidationBenchmark.legacyIsAmountValid(amount)) {
+                if (amount <= balance) {
+                    balance -= amount;
+                } else {
+                    throw new InsufficientFundsException("Not enough money");
+                }
+            } else {
+                throw new IllegalArgumentException("Invalid withdrawal amount");
+            }
+        }
+    }
+
+    BankAccount account;
+    DoubleAccount doubleAccount;
+
+    @Setup
+    public void setUp() {
+        account = new BankAccount("a@b.com", 1000);
+        doubleAccount = new DoubleAccount();
+        doubleAccount.balance = 1000;
+    }
+
+    @Benchmark
+    public long cents() throws InsufficientFundsException {
+        account.depositCents(1999);
+        account.withdrawCents(1999);
+        return account.getBalanceCents();
+    }
+
+    @Benchmark
+    public double centsFromDouble() throws InsufficientFundsException {
+        account.deposit(19.99);
+        account.withdraw(19.99);
+        return account.getBalance();
+    }
+
+    @Benchmark
+    public double legacyDouble() throws InsufficientFundsException {
+        doubleAccount.deposit(19.99);
+        doubleAccount.withdraw(19.99);
+        return doubleAccount.balance;
+    }
+
+}
@@ -0,0 +1,142 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Regression suite for the public BankAccount API, one benchmark per method
+ * and case, on one thread. BankAccountThreadedBenchmark covers the same
+ * postings from several threads.
+ *
+ * Run main to run both with the GC profiler and write the results as JSON,
+ * then compare two result files with BenchmarkComparison.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BankAccountBenchmark {
+
+    static final String DEFAULT_RESULT = "target/jmh/bank-benchmarks.json";
+
+    // Inputs are fields so the JIT cannot fold them
+    String validEmail = "abc.def@mail-archive.com";
+    String invalidEmail = "abc#def@mail.com";
+    // Worst case: long, and every other prefix character is special
+    String longEmail = "a.".repeat(100) + "a@" + "b-".repeat(100) + "b.com";
+    double validAmount = 19.99;
+    double invalidAmount = 19.999;
+    // Every prefix special, then letters, digits and specials that are not
+    char[] chars = ".!$%&'*+-/=?^_`{|}~aZ09#@(),:;<>[]\\\" ".toCharArray();
+    int next;
+
+    BankAccount account;
+    BankAccount rich;
+    BankAccount empty;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        account = new BankAccount("a@b.com", 0);
+        // Withdrawals and transfers for a whole run never drain it
+        rich = BankAccount.ofCents("b@c.com", Long.MAX_VALUE / 2);
+        empty = new BankAccount("c@d.com", 0);
+    }
+
+    @Benchmark
+    public BankAccount construct() {
+        return new BankAccount(validEmail, validAmount);
+    }
+
+    @Benchmark
+    public boolean isEmailValid() {
+        return BankAccount.isEmailValid(validEmail);
+    }
+
+    @Benchmark
+    public boolean isEmailValidInvalid() {
+        return BankAccount.isEmailValid(invalidEmail);
+    }
+
+    @Benchmark
+    public boolean isEmailValidLong() {
+        return BankAccount.isEmailValid(longEmail);
+    }
+
+    @Benchmark
+    public boolean isPrefixSpecial() {
+        char c = chars[next];
+        next = next + 1 == chars.length ? 0 : next + 1;
+        return BankAccount.isPrefixSpecial(c);
+    }
+
+    @Benchmark
+    public boolean isAmountValid() {
+        return BankAccount.isAmountValid(validAmount);
+    }
+
+    @Benchmark
+    public boolean isAmountValidInvalid() {
+        return BankAccount.isAmountValid(invalidAmount);
+    }
+
+    @Benchmark
+    public long deposit() {
+        account.deposit(validAmount);
+        return account.getBalanceCents();
+    }
+
+    @Benchmark
+    public long withdraw() throws InsufficientFundsException {
+        rich.withdraw(validAmount);
+        return rich.getBalanceCents();
+    }
+
+    @Benchmark
+    public long transfer() throws InsufficientFundsException {
+        rich.transfer(account, validAmount);
+        return account.getBalanceCents();
+    }
+
+    @Benchmark
+    public Exception transferInsufficientFunds() {
+        try {
+            empty.transfer(account, validAmount);
+            throw new IllegalStateException("Transfer from an empty account went through");
+        } catch (InsufficientFundsException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Runs the suite with the GC profiler and writes JSON results to args[0],
+     * or target/jmh/bank-benchmarks.json
+     */
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BankAccountBenchmark.class.getSimpleName())
+                .include(BankAccountThreadedBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(args.length > 0 ? args[0] : DEFAULT_RESULT)
+                .build()).run();
+    }
+
+}
@@ -0,0 +1,77 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The BankAccountBenchmark postings with four threads on the same accounts,
+ * so every thread contends on the same balances. isEmailValid shares nothing
+ * and shows how far the machine itself scales. Pass -t to the JMH runner for
+ * another thread count.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class BankAccountThreadedBenchmark {
+
+    String email = "abc.def@mail-archive.com";
+    double amount = 19.99;
+
+    BankAccount account;
+    BankAccount rich;
+    BankAccount empty;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        account = new BankAccount("a@b.com", 0);
+        rich = BankAccount.ofCents("b@c.com", Long.MAX_VALUE / 2);
+        empty = new BankAccount("c@d.com", 0);
+    }
+
+    @Benchmark
+    public boolean isEmailValid() {
+        return BankAccount.isEmailValid(email);
+    }
+
+    @Benchmark
+    public void deposit() {
+        account.deposit(amount);
+    }
+
+    @Benchmark
+    public void withdraw() throws InsufficientFundsException {
+        rich.withdraw(amount);
+    }
+
+    @Benchmark
+    public void transfer() throws InsufficientFundsException {
+        rich.transfer(account, amount);
+    }
+
+    @Benchmark
+    public Exception transferInsufficientFunds() {
+        try {
+            empty.transfer(account, amount);
+            throw new IllegalStateException("Transfer from an empty account went through");
+        } catch (InsufficientFundsException e) {
+            return e;
+        }
+    }
+
+}
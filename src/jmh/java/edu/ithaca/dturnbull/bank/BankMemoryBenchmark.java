@@ -0,0 +1,67 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Opens accountCount accounts in a fresh Bank and prints the heap each account
+ * keeps alive (account, email and index entry) after every iteration. Add
+ * -prof gc for allocation per account.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class BankMemoryBenchmark {
+
+    @Param({ "1000000" })
+    int accountCount;
+
+    @Param({ "64" })
+    int shards;
+
+    Bank bank;
+
+    @Benchmark
+    public Bank fill() {
+        bank = new Bank(shards, 0);
+        for (int i = 0; i < accountCount; i++) {
+            bank.openAccountCents("user" + i + "@bank.com", 1_000);
+        }
+        return bank;
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        if (bank.size() != accountCount) {
+            throw new IllegalStateException("Expected " + accountCount + " accounts, got " + bank.size());
+        }
+        long withBank = usedHeap();
+        bank = null;
+        long withoutBank = usedHeap();
+        System.out.println("retained bytes per account: " + (withBank - withoutBank) / (double) accountCount);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -0,0 +1,325 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files, such as a baseline from main and a run
+ * of a branch, and flags regressions:
+ *
+ * BenchmarkComparison baseline.json current.json [thresholdPercent]
+ *
+ * A score regressed if it got worse by more than thresholdPercent (10 by
+ * default) and by more than both runs' errors together, so noise alone is not
+ * flagged. Throughput is worse when lower, every other mode when higher. When
+ * both runs used the GC profiler, allocation per operation regressed if it
+ * grew by more than thresholdPercent and more than 8 bytes. Exits with status
+ * 1 if anything regressed.
+ */
+public final class BenchmarkComparison {
+
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10;
+    // Smaller growth in bytes/op is rounding in the GC profiler
+    private static final double ALLOCATION_FLOOR = 8;
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    private BenchmarkComparison() {
+    }
+
+    // One benchmark result: score, error and bytes allocated per operation, or NaN
+    private static final class Result {
+        final String mode;
+        final String unit;
+        final double score;
+        final double error;
+        final double bytesPerOp;
+
+        Result(String mode, String unit, double score, double error, double bytesPerOp) {
+            this.mode = mode;
+            this.unit = unit;
+            this.score = score;
+            this.error = error;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("usage: BenchmarkComparison baseline.json current.json [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length == 3 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+        Map<String, Result> baseline = read(Paths.get(args[0]));
+        Map<String, Result> current = read(Paths.get(args[1]));
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %8s %10s %10s  %s%n", "Benchmark", "Baseline", "Current", "Change",
+                "B/op base", "B/op now", "Unit");
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result now = entry.getValue();
+            Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-70s %14s %14.3f %8s %10s %10s  %s  new%n", entry.getKey(), "-", now.score,
+                        "-", "-", bytes(now.bytesPerOp), now.unit);
+                continue;
+            }
+            List<String> problems = new ArrayList<>();
+            if (!before.unit.equals(now.unit)) {
+                problems.add("unit changed from " + before.unit);
+            } else if (scoreRegressed(before, now, threshold)) {
+                problems.add("REGRESSION");
+            }
+            if (allocationRegressed(before, now, threshold)) {
+                problems.add("ALLOCATION REGRESSION");
+            }
+            regressions += problems.isEmpty() ? 0 : 1;
+            System.out.printf("%-70s %14.3f %14.3f %7.1f%% %10s %10s  %s  %s%n", entry.getKey(), before.score,
+                    now.score, 100 * (now.score - before.score) / before.score, bytes(before.bytesPerOp),
+                    bytes(now.bytesPerOp), now.unit, String.join(", ", problems));
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.printf("%-70s  missing from %s%n", key, args[1]);
+            }
+        }
+        System.out.printf("%d regression(s) beyond %.1f%%%n", regressions, threshold);
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean scoreRegressed(Result before, Result now, double threshold) {
+        // Throughput is better when higher, time modes when lower
+        double worse = before.mode.equals("thrpt") ? before.score - now.score : now.score - before.score;
+        double noise = zeroIfNaN(before.error) + zeroIfNaN(now.error);
+        return worse > Math.abs(before.score) * threshold / 100 && worse > noise;
+    }
+
+    private static boolean allocationRegressed(Result before, Result now, double threshold) {
+        if (Double.isNaN(before.bytesPerOp) || Double.isNaN(now.bytesPerOp)) {
+            return false;
+        }
+        double growth = now.bytesPerOp - before.bytesPerOp;
+        return growth > ALLOCATION_FLOOR && growth > before.bytesPerOp * threshold / 100;
+    }
+
+    private static double zeroIfNaN(double value) {
+        return Double.isNaN(value) ? 0 : value;
+    }
+
+    private static String bytes(double bytesPerOp) {
+        return Double.isNaN(bytesPerOp) ? "-" : String.format("%.1f", bytesPerOp);
+    }
+
+    // Results by benchmark name, parameters and mode, in file order
+    @SuppressWarnings("unchecked")
+    private static Map<String, Result> read(Path file) throws IOException {
+        Object json = new Json(new String(Files.readAllBytes(file), StandardCharsets.UTF_8)).value();
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (Object element : (List<Object>) json) {
+            Map<String, Object> run = (Map<String, Object>) element;
+            String benchmark = (String) run.get("benchmark");
+            // Class and method, without the package
+            int method = benchmark.lastIndexOf('.');
+            StringBuilder key = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.', method - 1) + 1));
+            Object params = run.get("params");
+            if (params != null) {
+                // Sorted so the key does not depend on the order JMH wrote them in
+                new TreeMap<>((Map<String, Object>) params)
+                        .forEach((name, value) -> key.append(' ').append(name).append('=').append(value));
+            }
+            String mode = (String) run.get("mode");
+            key.append(" [").append(mode).append(", ").append((long) number(run.get("threads"))).append(" threads]");
+            Map<String, Object> primary = (Map<String, Object>) run.get("primaryMetric");
+            double bytesPerOp = Double.NaN;
+            Map<String, Object> secondary = (Map<String, Object>) run.get("secondaryMetrics");
+            if (secondary != null && secondary.get(ALLOCATION) != null) {
+                bytesPerOp = number(((Map<String, Object>) secondary.get(ALLOCATION)).get("score"));
+            }
+            results.put(key.toString(), new Result(mode, (String) primary.get("scoreUnit"),
+                    number(primary.get("score")), number(primary.get("scoreError")), bytesPerOp));
+        }
+        return results;
+    }
+
+    // JMH writes NaN as the string "NaN"
+    private static double number(Object value) {
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+        return value == null ? Double.NaN : Double.parseDouble(value.toString());
+    }
+
+    // Just enough of a JSON reader for JMH results: objects become Maps, arrays
+    // Lists, numbers Doubles
+    private static final class Json {
+        private final String text;
+        private int position;
+
+        Json(String text) {
+            this.text = text;
+        }
+
+        Object value() {
+            skipSpace();
+            if (position == text.length()) {
+                throw error("Unexpected end");
+            }
+            char c = text.charAt(position);
+            switch (c) {
+                case '{':
+                    return object();
+                case '[':
+                    return array();
+                case '"':
+                    return string();
+                case 't':
+                    return literal("true", Boolean.TRUE);
+                case 'f':
+                    return literal("false", Boolean.FALSE);
+                case 'n':
+                    return literal("null", null);
+                default:
+                    return number();
+            }
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            position++;
+            skipSpace();
+            if (peek() == '}') {
+                position++;
+                return object;
+            }
+            while (true) {
+                skipSpace();
+                String name = string();
+                skipSpace();
+                expect(':');
+                object.put(name, value());
+                skipSpace();
+                if (peek() == '}') {
+                    position++;
+                    return object;
+                }
+                expect(',');
+            }
+        }
+
+        private List<Object> array() {
+            List<Object> array = new ArrayList<>();
+            position++;
+            skipSpace();
+            if (peek() == ']') {
+                position++;
+                return array;
+            }
+            while (true) {
+                array.add(value());
+                skipSpace();
+                if (peek() == ']') {
+                    position++;
+                    return array;
+                }
+                expect(',');
+            }
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder s = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return s.toString();
+                }
+                if (c != '\\') {
+                    s.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case 'b':
+                        s.append('\b');
+                        break;
+                    case 'f':
+                        s.append('\f');
+                        break;
+                    case 'n':
+                        s.append('\n');
+                        break;
+                    case 'r':
+                        s.append('\r');
+                        break;
+                    case 't':
+                        s.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            throw error("Bad escape");
+                        }
+                        s.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        position += 4;
+                        break;
+                    default:
+                        s.append(escaped);
+                }
+            }
+        }
+
+        private Double number() {
+            int start = position;
+            while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            if (start == position) {
+                throw error("Unexpected character");
+            }
+            return Double.valueOf(text.substring(start, position));
+        }
+
+        private Object literal(String word, Object value) {
+            if (!text.startsWith(word, position)) {
+                throw error("Unexpected character");
+            }
+            position += word.length();
+            return value;
+        }
+
+        private void skipSpace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private char peek() {
+            return position < text.length() ? text.charAt(position) : 0;
+        }
+
+        private char next() {
+            if (position == text.length()) {
+                throw error("Unexpected end");
+            }
+            return text.charAt(position++);
+        }
+
+        private void expect(char c) {
+            if (next() != c) {
+                throw error("Expected " + c);
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at offset " + position + " of JMH results");
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the table-driven isEmailValid with the old per-character version on
+ * valid, invalid and long inputs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EmailValidationBenchmark {
+
+    @Param({ "valid", "invalidPrefix", "invalidDomain", "longValid", "longSpecials" })
+    String input;
+
+    String email;
+
+    @Setup
+    public void setUp() {
+        switch (input) {
+            case "valid":
+                email = "abc.def@mail-archive.com";
+                break;
+            case "invalidPrefix":
+                email = "abc#def@mail.com";
+                break;
+            case "invalidDomain":
+                email = "abc.def@mail#archive.com";
+                break;
+            case "longValid":
+                email = "a".repeat(200) + "@" + "b".repeat(200) + ".com";
+                break;
+            case "longSpecials":
+                // Worst case for the old prefix check, every other char is special
+                email = "a.".repeat(100) + "a@" + "b-".repeat(100) + "b.com";
+                break;
+            default:
+                throw new IllegalArgumentException(input);
+        }
+    }
+
+    @Benchmark
+    public boolean table() {
+        return BankAccount.isEmailValid(email);
+    }
+
+    @Benchmark
+    public boolean legacy() {
+        return legacyIsEmailValid(email);
+    }
+
+    // The per-character isEmailValid used before EmailValidator existed
+    static boolean legacyIsEmailValid(String email) {
+        if (email.isBlank()) {
+            return false;
+        }
+        int atIndex = email.indexOf('@');
+        int lastPeriodIndex = email.lastIndexOf('.');
+        if (atIndex == -1 || lastPeriodIndex == -1 || lastPeriodIndex <= atIndex) {
+            return false;
+        }
+        if (atIndex == 0) {
+            return false;
+        }
+        for (int i = 0; i < atIndex; i++) {
+            char c = email.charAt(i);
+            boolean charAlphaNum = Character.isLetterOrDigit(c);
+            if (!charAlphaNum) {
+                if (!legacyIsPrefixSpecial(c)) {
+                    return false;
+                } else {
+                    if (!Character.isLetterOrDigit(email.charAt(i + 1)) || i == 0) {
+                        return false;
+                    }
+                    i++;
+                }
+            }
+        }
+        if (lastPeriodIndex + 2 >= email.length()) {
+            return false;
+        }
+        for (int i = atIndex + 1; i < email.length(); i++) {
+            char c = email.charAt(i);
+            if (!(Character.isLetterOrDigit(c)) && !(c == '-')) {
+                if (!(c == '.' && i == lastPeriodIndex)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    static boolean legacyIsPrefixSpecial(char c) {
+        char[] prefixSpecial = { '.', '!', '$', '%', '&', '\'', '*', '+', '-', '/', '=', '?', '^', '_', '`', '{', '|',
+                '}', '~' };
+        for (char special : prefixSpecial) {
+            if (special == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
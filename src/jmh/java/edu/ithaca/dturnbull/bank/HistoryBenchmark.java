@@ -0,0 +1,144 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Records postingsPerAccount postings for each of accountCount accounts, with
+ * TransactionHistory ("ring") or with a bounded ArrayDeque of entry objects
+ * per account ("objects"), the usual object-list design. After each
+ * iteration it prints the heap the history keeps alive per account and the
+ * time spent in garbage collection. Add -prof gc for allocation per op.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class HistoryBenchmark {
+
+    @Param({ "ring", "objects" })
+    String store;
+
+    @Param({ "1000000" })
+    int accountCount;
+
+    @Param({ "16" })
+    int depth;
+
+    @Param({ "32" })
+    int postingsPerAccount;
+
+    BankAccount[] accounts;
+    TransactionHistory history;
+    ObjectHistory objectHistory;
+    long gcMillisBefore;
+
+    // One posting, as an object-list history would keep it
+    record Entry(byte type, long cents, BankAccount counterparty, long timestampMillis) {
+    }
+
+    // Bounded per-account lists of entry objects
+    static final class ObjectHistory {
+        final ArrayDeque<Entry>[] entries;
+        final int depth;
+
+        // A generic array can only be created raw, as Bank's shards are
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        ObjectHistory(int accountCount, int depth) {
+            entries = new ArrayDeque[accountCount];
+            this.depth = depth;
+        }
+
+        void record(int account, Entry entry) {
+            ArrayDeque<Entry> list = entries[account];
+            if (list == null) {
+                list = new ArrayDeque<>(depth);
+                entries[account] = list;
+            }
+            if (list.size() == depth) {
+                list.pollFirst();
+            }
+            list.addLast(entry);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void open() {
+        accounts = new BankAccount[accountCount];
+        history = null;
+        objectHistory = null;
+        if (store.equals("ring")) {
+            history = new TransactionHistory(depth);
+        } else {
+            objectHistory = new ObjectHistory(accountCount, depth);
+        }
+        for (int i = 0; i < accountCount; i++) {
+            accounts[i] = BankAccount.ofCents("user" + i + "@bank.com", 0);
+            if (history != null) {
+                history.allocate(accounts[i]);
+            }
+        }
+        gcMillisBefore = gcMillis();
+    }
+
+    @Benchmark
+    public void record() {
+        long now = System.currentTimeMillis();
+        for (int p = 0; p < postingsPerAccount; p++) {
+            for (int i = 0; i < accountCount; i++) {
+                BankAccount counterparty = accounts[(i + 1) % accountCount];
+                if (history != null) {
+                    history.record(accounts[i], TransactionHistory.TRANSFER_OUT, p, counterparty, now);
+                } else {
+                    objectHistory.record(i, new Entry(TransactionHistory.TRANSFER_OUT, p, counterparty, now));
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        long gc = gcMillis() - gcMillisBefore;
+        long withHistory = usedHeap();
+        history = null;
+        objectHistory = null;
+        long withoutHistory = usedHeap();
+        System.out.println("retained bytes per account: " + (withHistory - withoutHistory) / (double) accountCount
+                + ", gc ms during iteration: " + gc);
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, bean.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -0,0 +1,118 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Imports a generated CSV of rowCount accounts, 1% of them invalid, into a
+ * fresh Bank with AccountImporter on a ForkJoinPool of parallelism threads,
+ * and with the one-line-at-a-time baseline of BufferedReader, String.split,
+ * Double.parseDouble and Bank.openAccount relying on exceptions. Rows/sec are
+ * printed after each iteration.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class ImportBenchmark {
+
+    @Param({ "2000000" })
+    int rowCount;
+
+    @Param({ "1", "2", "4", "8" })
+    int parallelism;
+
+    Path directory;
+    Path csv;
+    Path rejects;
+    ForkJoinPool pool;
+    Bank bank;
+    long startNanos;
+
+    @Setup(Level.Trial)
+    public void write() throws IOException {
+        directory = Files.createTempDirectory("import-bench");
+        csv = directory.resolve("accounts.csv");
+        rejects = directory.resolve("rejects.csv");
+        Random random = new Random(42);
+        try (BufferedWriter out = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < rowCount; i++) {
+                boolean bad = random.nextInt(100) == 0;
+                out.write(bad && random.nextBoolean() ? "user" + i + "@bank" : "first.last" + i + "@example.com");
+                out.write(',');
+                out.write(bad ? "12.345" : random.nextInt(100_000) + "." + random.nextInt(100));
+                out.write('\n');
+            }
+        }
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        pool.shutdown();
+        Files.deleteIfExists(csv);
+        Files.deleteIfExists(rejects);
+        Files.deleteIfExists(directory);
+    }
+
+    @Setup(Level.Iteration)
+    public void open() {
+        bank = new Bank(64, rowCount);
+        startNanos = System.nanoTime();
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("rows/sec: %.0f%n", rowCount / seconds);
+        bank = null;
+    }
+
+    @Benchmark
+    public long importer() throws IOException {
+        return new AccountImporter(bank, pool).importFile(csv, rejects).imported();
+    }
+
+    @Benchmark
+    public long oneByOne() throws IOException {
+        long imported = 0;
+        try (BufferedReader in = Files.newBufferedReader(csv, StandardCharsets.UTF_8);
+                BufferedWriter out = Files.newBufferedWriter(rejects, StandardCharsets.UTF_8)) {
+            for (String line; (line = in.readLine()) != null;) {
+                String[] fields = line.split(",");
+                try {
+                    bank.openAccount(fields[0], Double.parseDouble(fields[1]));
+                    imported++;
+                } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                    out.write(line);
+                    out.write('\n');
+                }
+            }
+        }
+        return imported;
+    }
+
+}
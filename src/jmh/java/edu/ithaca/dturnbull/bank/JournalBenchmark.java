@@ -0,0 +1,79 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Journaled deposits through a Bank at each durability level. Throughput gives
+ * postings/sec, and sample time gives the latency percentiles (p0.99). The
+ * journal lives in a temporary directory on local disk (java.io.tmpdir), which
+ * is recreated for every iteration.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class JournalBenchmark {
+
+    @Param({ "NONE", "GROUP", "SYNC" })
+    Durability durability;
+
+    @Param({ "1000" })
+    long flushIntervalMicros;
+
+    @Param({ "1024" })
+    int accountCount;
+
+    Path directory;
+    Journal journal;
+    Bank bank;
+    BankAccount[] accounts;
+
+    @Setup(Level.Iteration)
+    public void open() throws IOException {
+        directory = Files.createTempDirectory("journal-bench");
+        journal = new Journal(directory, 64 << 20, flushIntervalMicros);
+        bank = new Bank(64, accountCount, journal);
+        accounts = new BankAccount[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accounts[i] = bank.openAccountCents("user" + i + "@bank.com", 0);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void deposit() {
+        bank.deposit(accounts[ThreadLocalRandom.current().nextInt(accountCount)], 1999, durability);
+    }
+
+}
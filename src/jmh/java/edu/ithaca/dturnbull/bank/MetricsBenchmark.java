@@ -0,0 +1,99 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of Metrics on the instrumented BankAccount operations, with metrics
+ * switched on and off. The raw benchmarks call the uninstrumented code
+ * directly, as the floor for metrics off.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MetricsBenchmark {
+
+    @Param({ "false", "true" })
+    boolean enabled;
+
+    BankAccount account;
+    BankAccount other;
+    String email = "first.last@example.com";
+    double amount = 19.99;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Metrics.setEnabled(enabled);
+        account = new BankAccount("a@b.com", 1000);
+        other = new BankAccount("b@c.com", 1000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Metrics.setEnabled(false);
+        Metrics.reset();
+    }
+
+    @Benchmark
+    public long depositWithdraw() throws InsufficientFundsException {
+        account.depositCents(1999);
+        account.withdrawCents(1999);
+        return account.getBalanceCents();
+    }
+
+    @Benchmark
+    public long rawDepositWithdraw() {
+        account.tryDepositCents(1999);
+        account.tryWithdrawCents(1999);
+        return account.getBalanceCents();
+    }
+
+    @Benchmark
+    public long transferBack() throws InsufficientFundsException {
+        account.transferCents(other, 1999);
+        other.transferCents(account, 1999);
+        return account.getBalanceCents();
+    }
+
+    @Benchmark
+    public BankAccount construct() {
+        return new BankAccount(email, amount);
+    }
+
+    @Benchmark
+    public boolean isEmailValid() {
+        return BankAccount.isEmailValid(email);
+    }
+
+    @Benchmark
+    public boolean rawIsEmailValid() {
+        return EmailValidator.isValid(email);
+    }
+
+    @Benchmark
+    public boolean isAmountValid() {
+        return BankAccount.isAmountValid(amount);
+    }
+
+    @Benchmark
+    public boolean rawIsAmountValid() {
+        return Money.isValidAmount(amount);
+    }
+
+}
@@ -0,0 +1,102 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Postings per microsecond for a settlement batch applied with PostingBatch
+ * versus one deposit/withdraw call per posting. rejectShare of the postings
+ * are over-withdrawals or invalid amounts, and grouped sorts the batch by
+ * account. PostingBatch groups a batch by account itself, so grouped only
+ * shows what arriving presorted still saves.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+@OperationsPerInvocation(PostingBatchBenchmark.BATCH_SIZE)
+public class PostingBatchBenchmark {
+
+    static final int BATCH_SIZE = 4096;
+
+    @Param({ "0.0", "0.1", "0.5" })
+    double rejectShare;
+
+    @Param({ "false", "true" })
+    boolean grouped;
+
+    @Param({ "1000" })
+    int accountCount;
+
+    BankAccount[] batchAccounts = new BankAccount[BATCH_SIZE];
+    long[] cents = new long[BATCH_SIZE];
+    double[] amounts = new double[BATCH_SIZE];
+    byte[] types = new byte[BATCH_SIZE];
+    byte[] results = new byte[BATCH_SIZE];
+
+    @Setup
+    public void setUp() {
+        BankAccount[] accounts = new BankAccount[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accounts[i] = BankAccount.ofCents("user" + i + "@bank.com", 1_000_000_000L);
+        }
+        SplittableRandom random = new SplittableRandom(7);
+        int[] order = new int[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            order[i] = random.nextInt(accountCount);
+        }
+        if (grouped) {
+            Arrays.sort(order);
+        }
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batchAccounts[i] = accounts[order[i]];
+            // Alternating deposits and withdrawals of similar size keep balances steady
+            types[i] = i % 2 == 0 ? PostingBatch.DEPOSIT : PostingBatch.WITHDRAW;
+            cents[i] = 1 + random.nextInt(10_000);
+            if (random.nextDouble() < rejectShare) {
+                cents[i] = types[i] == PostingBatch.WITHDRAW ? Long.MAX_VALUE / 2 : -1;
+            }
+            amounts[i] = cents[i] < 0 ? -0.01 : Money.toAmount(cents[i]);
+        }
+    }
+
+    @Benchmark
+    public byte[] batch() {
+        PostingBatch.apply(batchAccounts, cents, types, BATCH_SIZE, results);
+        return results;
+    }
+
+    @Benchmark
+    public int perCall() {
+        int rejected = 0;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            try {
+                if (types[i] == PostingBatch.DEPOSIT) {
+                    batchAccounts[i].deposit(amounts[i]);
+                } else {
+                    batchAccounts[i].withdraw(amounts[i]);
+                }
+            } catch (InsufficientFundsException | IllegalArgumentException e) {
+                rejected++;
+            }
+        }
+        return rejected;
+    }
+
+}
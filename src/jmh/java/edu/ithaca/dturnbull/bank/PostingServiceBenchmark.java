@@ -0,0 +1,120 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Load generator for PostingService. Each benchmark thread is a client that
+ * keeps WINDOW postings in flight (deposits and transfers between random
+ * accounts) and waits for them all, so throughput is postings/sec. Each
+ * posting's own latency, from submission to completion, goes into a
+ * LatencyHistogram whose percentiles are printed after each iteration.
+ *
+ * "virtual" drains mailboxes on virtual threads, "platform" on a fixed pool
+ * of platformThreads threads. GROUP postings complete at the journal's group
+ * commit, which does not hold a mailbox's thread.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class PostingServiceBenchmark {
+
+    private static final int WINDOW = 256;
+
+    @Param({ "virtual", "platform" })
+    String executorType;
+
+    @Param({ "NONE", "GROUP" })
+    Durability durability;
+
+    @Param({ "16" })
+    int platformThreads;
+
+    @Param({ "10000" })
+    int accountCount;
+
+    Path directory;
+    Journal journal;
+    ExecutorService executor;
+    PostingService service;
+    String[] emails;
+    LatencyHistogram latency;
+
+    @Setup(Level.Iteration)
+    public void open() throws IOException {
+        if (executorType.equals("virtual")) {
+            executor = Executors.newVirtualThreadPerTaskExecutor();
+        } else {
+            executor = Executors.newFixedThreadPool(platformThreads);
+        }
+        directory = Files.createTempDirectory("posting-bench");
+        journal = new Journal(directory, 256 << 20, 1_000);
+        Bank bank = new Bank(64, accountCount, journal);
+        emails = new String[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            emails[i] = "user" + i + "@bank.com";
+            bank.openAccountCents(emails[i], 1_000_000);
+        }
+        service = new PostingService(bank, executor, 4096);
+        latency = new LatencyHistogram();
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws Exception {
+        service.close();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+        System.out.printf("posting latency us: p50 %.1f, p99 %.1f, p99.9 %.1f%n",
+                latency.valueAtPercentile(50) / 1e3, latency.valueAtPercentile(99) / 1e3,
+                latency.valueAtPercentile(99.9) / 1e3);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WINDOW)
+    public void postings() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        CompletableFuture<?>[] window = new CompletableFuture<?>[WINDOW];
+        for (int i = 0; i < WINDOW; i++) {
+            String email = emails[random.nextInt(accountCount)];
+            long start = System.nanoTime();
+            CompletableFuture<Void> posting = i % 2 == 0
+                    ? service.deposit(email, 1999, durability)
+                    : service.transfer(email, emails[random.nextInt(accountCount)], 1999, durability);
+            window[i] = posting.whenComplete((ignored, failure) -> latency.record(System.nanoTime() - start));
+        }
+        CompletableFuture.allOf(window).join();
+    }
+
+}
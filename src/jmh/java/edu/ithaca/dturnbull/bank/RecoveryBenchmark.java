@@ -0,0 +1,94 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Restart time: rebuilding a bank of accountCount accounts, each with
+ * postingsPerAccount deposits in its history. With checkpointed the bank was
+ * checkpointed before the last 1% of postings, so recovery loads the snapshot
+ * and replays only those. Without it, recovery replays the whole journal.
+ * Files live in java.io.tmpdir and are written once per trial.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class RecoveryBenchmark {
+
+    private static final int SEGMENT_SIZE = 256 << 20;
+
+    @Param({ "1000000", "10000000" })
+    int accountCount;
+
+    @Param({ "4" })
+    int postingsPerAccount;
+
+    @Param({ "true", "false" })
+    boolean checkpointed;
+
+    Path directory;
+    Path journalDirectory;
+    Path snapshotDirectory;
+
+    @Setup(Level.Trial)
+    public void write() throws IOException {
+        directory = Files.createTempDirectory("recovery-bench");
+        journalDirectory = directory.resolve("journal");
+        snapshotDirectory = directory.resolve("snapshots");
+        try (Journal journal = new Journal(journalDirectory, SEGMENT_SIZE, 1_000)) {
+            Bank bank = new Bank(64, accountCount, journal);
+            BankAccount[] accounts = new BankAccount[accountCount];
+            for (int i = 0; i < accountCount; i++) {
+                accounts[i] = bank.openAccountCents("user" + i + "@bank.com", 1_000);
+            }
+            long postings = (long) accountCount * postingsPerAccount;
+            long tail = postings / 100;
+            for (long p = 0; p < postings; p++) {
+                if (checkpointed && p == postings - tail) {
+                    bank.checkpoint(snapshotDirectory);
+                }
+                bank.deposit(accounts[(int) (p % accountCount)], 1999, Durability.NONE);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int recover() throws IOException {
+        try (Journal journal = new Journal(journalDirectory, SEGMENT_SIZE, 1_000)) {
+            Bank bank = Bank.recover(journal, snapshotDirectory);
+            if (bank.size() != accountCount) {
+                throw new IllegalStateException("Expected " + accountCount + " accounts, got " + bank.size());
+            }
+            return bank.size();
+        }
+    }
+
+}
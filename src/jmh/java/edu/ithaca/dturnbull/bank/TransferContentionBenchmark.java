@@ -0,0 +1,82 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Random transfers between accounts where hotSkew is the share of transfers
+ * that touch account 0. Run main to sweep 1 to 64 threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransferContentionBenchmark {
+
+    @Param({ "10000" })
+    int accountCount;
+
+    @Param({ "0.0", "0.1", "0.5", "0.9" })
+    double hotSkew;
+
+    @Param({ "1024" })
+    int stripes;
+
+    BankAccount[] accounts;
+    TransferEngine engine;
+
+    @State(Scope.Thread)
+    public static class Picker {
+        final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Setup
+    public void setUp() {
+        engine = new TransferEngine(stripes);
+        accounts = new BankAccount[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accounts[i] = BankAccount.ofCents("user" + i + "@bank.com", 1_000_000_000_000L);
+        }
+    }
+
+    @Benchmark
+    public void transfer(Picker picker) throws InsufficientFundsException {
+        SplittableRandom random = picker.random;
+        int from = random.nextDouble() < hotSkew ? 0 : random.nextInt(accountCount);
+        int to = random.nextInt(accountCount);
+        // Swap half the time so the hot account both pays and receives
+        if (random.nextBoolean()) {
+            int swap = from;
+            from = to;
+            to = swap;
+        }
+        engine.transfer(accounts[from], accounts[to], 1);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            new Runner(new OptionsBuilder()
+                    .include(TransferContentionBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+
+}
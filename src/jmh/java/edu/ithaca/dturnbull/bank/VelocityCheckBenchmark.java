@@ -0,0 +1,95 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Bank withdrawals and transfers between random accounts with no PostingCheck
+ * and with a VelocityLimiter whose limits are never reached, so every posting
+ * pays for a full check. limiterOnly is the limiter's own check and debited
+ * cost. Run main to sweep 1 to 8 threads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VelocityCheckBenchmark {
+
+    @Param({ "100000" })
+    int accountCount;
+
+    @Param({ "none", "limiter" })
+    String check;
+
+    @Param({ "10", "60" })
+    int bucketCount;
+
+    Bank bank;
+    BankAccount[] accounts;
+    VelocityLimiter limiter;
+
+    @State(Scope.Thread)
+    public static class Picker {
+        final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Setup
+    public void setUp() {
+        bank = new Bank(64, accountCount);
+        accounts = new BankAccount[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accounts[i] = bank.openAccountCents("user" + i + "@bank.com", 1_000_000_000_000L);
+        }
+        limiter = new VelocityLimiter(60_000, bucketCount, Long.MAX_VALUE, Long.MAX_VALUE);
+        if (check.equals("limiter")) {
+            bank.setPostingCheck(limiter);
+        }
+    }
+
+    @Benchmark
+    public void withdraw(Picker picker) throws InsufficientFundsException {
+        bank.withdraw(accounts[picker.random.nextInt(accountCount)], 1, Durability.NONE);
+    }
+
+    @Benchmark
+    public void transfer(Picker picker) throws InsufficientFundsException {
+        bank.transfer(accounts[picker.random.nextInt(accountCount)], accounts[picker.random.nextInt(accountCount)],
+                1, Durability.NONE);
+    }
+
+    // Not under the account's lock, so only meaningful single-threaded
+    @Benchmark
+    public void limiterOnly(Picker picker) {
+        BankAccount account = accounts[picker.random.nextInt(accountCount)];
+        long now = System.nanoTime();
+        limiter.check(account, 1, now);
+        limiter.debited(account, 1, now);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads = 1; threads <= 8; threads *= 2) {
+            new Runner(new OptionsBuilder()
+                    .include(VelocityCheckBenchmark.class.getSimpleName() + ".(withdraw|transfer)")
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+
+}
@@ -0,0 +1,323 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Opens accounts in a Bank from a CSV file of "email,balance" lines, such as
+ * "a@b.com,1999.50". Balances are parsed straight into cents with the same
+ * rules as BankAccount.isAmountValid, and only the email of a line that got
+ * that far is turned into a String.
+ *
+ * The file is memory-mapped one window at a time. Each window is cut at line
+ * ends into ranges that a ForkJoinPool parses, validates and opens in
+ * parallel, so memory use depends on the window size and not the file size.
+ * Lines that cannot be imported go to a rejects file, in input order, as
+ * "offset,reason,line" where offset is the line's byte offset in the input
+ * and reason is the first problem found: malformed (no comma),
+ * invalid-amount, invalid-email or duplicate. Blank lines are skipped.
+ *
+ * There is no header detection: a header line such as "email,balance" is an
+ * invalid-amount reject unless the import is told to skip it.
+ */
+public class AccountImporter {
+
+    private static final int DEFAULT_WINDOW_BYTES = 64 << 20;
+    private static final int DEFAULT_SPLIT_BYTES = 256 << 10;
+    // Longer emails are rejected without being read
+    private static final int MAX_EMAIL_BYTES = 1024;
+
+    private static final byte[] MALFORMED = bytes("malformed");
+    private static final byte[] INVALID_AMOUNT = bytes("invalid-amount");
+    private static final byte[] INVALID_EMAIL = bytes("invalid-email");
+    private static final byte[] DUPLICATE = bytes("duplicate");
+
+    private final Bank bank;
+    private final ForkJoinPool pool;
+    private final int windowBytes;
+    private final int splitBytes;
+
+    /**
+     * Imports on the common ForkJoinPool
+     */
+    public AccountImporter(Bank bank) {
+        this(bank, ForkJoinPool.commonPool());
+    }
+
+    public AccountImporter(Bank bank, ForkJoinPool pool) {
+        this(bank, pool, DEFAULT_WINDOW_BYTES, DEFAULT_SPLIT_BYTES);
+    }
+
+    // windowBytes bounds the longest line; ranges up to splitBytes are parsed by one task
+    AccountImporter(Bank bank, ForkJoinPool pool, int windowBytes, int splitBytes) {
+        if (windowBytes <= 0 || splitBytes <= 0) {
+            throw new IllegalArgumentException("Invalid importer sizes");
+        }
+        this.bank = bank;
+        this.pool = pool;
+        this.windowBytes = windowBytes;
+        this.splitBytes = splitBytes;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Counts of one import
+     */
+    public static final class Summary {
+        private long rows;
+        private long imported;
+        private long rejected;
+
+        // Non-blank lines read
+        public long rows() {
+            return rows;
+        }
+
+        public long imported() {
+            return imported;
+        }
+
+        public long rejected() {
+            return rejected;
+        }
+    }
+
+    /**
+     * Imports every line of csv, replacing rejects with the lines that were not
+     * imported. Accounts are opened with Durability.NONE.
+     *
+     * @throws IOException if a file cannot be read or written, or a line is
+     *                     longer than the window
+     */
+    public Summary importFile(Path csv, Path rejects) throws IOException {
+        return importFile(csv, rejects, false);
+    }
+
+    /**
+     * Same as importFile(csv, rejects), but with skipHeader the first line is
+     * skipped and not counted as a row, whatever it holds
+     */
+    public Summary importFile(Path csv, Path rejects, boolean skipHeader) throws IOException {
+        Summary summary = new Summary();
+        try (FileChannel in = FileChannel.open(csv, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(rejects, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                int length = (int) Math.min(windowBytes, size - position);
+                MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int end = length;
+                if (position + length < size) {
+                    // Leave the last, unfinished line to the next window
+                    while (end > 0 && window.get(end - 1) != '\n') {
+                        end--;
+                    }
+                    if (end == 0) {
+                        throw new IOException("Line longer than " + windowBytes + " bytes at offset " + position);
+                    }
+                }
+                int start = 0;
+                if (skipHeader && position == 0) {
+                    // The first window ends at a line end unless it is the whole file
+                    while (start < end && window.get(start) != '\n') {
+                        start++;
+                    }
+                    start = Math.min(start + 1, end);
+                }
+                Range range = new Range(window, position, start, end);
+                pool.invoke(range);
+                range.finish(summary, out);
+                position += end;
+            }
+        }
+        return summary;
+    }
+
+    // Lines from (inclusive) to to (exclusive) of a window, split in half at a
+    // line end until small enough to parse in one task
+    private final class Range extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // A task is never serialized, and a buffer cannot be
+        private final transient ByteBuffer window;
+        private final long base;
+        private final int from;
+        private final int to;
+        private Range left;
+        private Range right;
+        private long rows;
+        private long imported;
+        private long rejected;
+        private byte[] rejects;
+        private int rejectsLength;
+
+        Range(ByteBuffer window, long base, int from, int to) {
+            this.window = window;
+            this.base = base;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > splitBytes) {
+                int middle = from + (to - from) / 2;
+                while (middle < to && window.get(middle - 1) != '\n') {
+                    middle++;
+                }
+                if (middle < to) {
+                    left = new Range(window, base, from, middle);
+                    right = new Range(window, base, middle, to);
+                    invokeAll(left, right);
+                    return;
+                }
+            }
+            parse();
+        }
+
+        private void parse() {
+            byte[] email = new byte[MAX_EMAIL_BYTES];
+            int start = from;
+            while (start < to) {
+                int newline = start;
+                while (newline < to && window.get(newline) != '\n') {
+                    newline++;
+                }
+                int end = newline;
+                if (end > start && window.get(end - 1) == '\r') {
+                    end--;
+                }
+                if (end > start) {
+                    rows++;
+                    importLine(start, end, email);
+                }
+                start = newline + 1;
+            }
+        }
+
+        private void importLine(int start, int end, byte[] email) {
+            int comma = start;
+            while (comma < end && window.get(comma) != ',') {
+                comma++;
+            }
+            if (comma == end) {
+                reject(start, end, MALFORMED);
+                return;
+            }
+            long cents = parseCents(comma + 1, end);
+            if (cents < 0) {
+                reject(start, end, INVALID_AMOUNT);
+                return;
+            }
+            int length = comma - start;
+            if (length > MAX_EMAIL_BYTES) {
+                reject(start, end, INVALID_EMAIL);
+                return;
+            }
+            boolean ascii = true;
+            for (int i = 0; i < length; i++) {
+                byte b = window.get(start + i);
+                email[i] = b;
+                ascii &= b >= 0;
+            }
+            // Latin-1 decoding of ASCII is a plain copy
+            String address = new String(email, 0, length,
+                    ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+            if (!EmailValidator.isValid(address)) {
+                reject(start, end, INVALID_EMAIL);
+                return;
+            }
+            if (!bank.tryRegister(BankAccount.ofValidatedCents(address, cents), Durability.NONE)) {
+                reject(start, end, DUPLICATE);
+                return;
+            }
+            imported++;
+        }
+
+        // Cents of a non-negative decimal with at most two non-zero decimals
+        // below Money's limit, or -1
+        private long parseCents(int start, int end) {
+            long units = 0;
+            long fraction = 0;
+            boolean digits = false;
+            int i = start;
+            for (; i < end && isDigit(window.get(i)); i++) {
+                units = units * 10 + window.get(i) - '0';
+                if (units >= Long.MAX_VALUE / Money.CENTS_PER_UNIT) {
+                    return -1;
+                }
+                digits = true;
+            }
+            if (i < end && window.get(i) == '.') {
+                int places = 0;
+                for (i++; i < end && isDigit(window.get(i)); i++, places++) {
+                    int digit = window.get(i) - '0';
+                    if (places < Money.SCALE) {
+                        fraction = fraction * 10 + digit;
+                    } else if (digit != 0) {
+                        return -1;
+                    }
+                    digits = true;
+                }
+                for (; places < Money.SCALE; places++) {
+                    fraction *= 10;
+                }
+            }
+            if (!digits || i != end) {
+                return -1;
+            }
+            return units * Money.CENTS_PER_UNIT + fraction;
+        }
+
+        private boolean isDigit(byte b) {
+            return b >= '0' && b <= '9';
+        }
+
+        private void reject(int start, int end, byte[] reason) {
+            rejected++;
+            byte[] offset = bytes(Long.toString(base + start));
+            int needed = rejectsLength + offset.length + reason.length + (end - start) + 3;
+            if (rejects == null || needed > rejects.length) {
+                rejects = Arrays.copyOf(rejects == null ? new byte[0] : rejects, Math.max(needed, 2 * needed));
+            }
+            System.arraycopy(offset, 0, rejects, rejectsLength, offset.length);
+            rejectsLength += offset.length;
+            rejects[rejectsLength++] = ',';
+            System.arraycopy(reason, 0, rejects, rejectsLength, reason.length);
+            rejectsLength += reason.length;
+            rejects[rejectsLength++] = ',';
+            window.get(start, rejects, rejectsLength, end - start);
+            rejectsLength += end - start;
+            rejects[rejectsLength++] = '\n';
+        }
+
+        // Adds the counts to summary and writes the rejects, in input order
+        void finish(Summary summary, FileChannel out) throws IOException {
+            if (left != null) {
+                left.finish(summary, out);
+                right.finish(summary, out);
+                return;
+            }
+            summary.rows += rows;
+            summary.imported += imported;
+            summary.rejected += rejected;
+            ByteBuffer buffer = ByteBuffer.wrap(rejects == null ? new byte[0] : rejects, 0, rejectsLength);
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,252 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Applies one Rule, such as a night's interest or a month's fee, to every
+ * account of a Bank in parallel. Each change is made, journaled and recorded
+ * in the bank's TransactionHistory like a deposit or withdrawal, without the
+ * per-call validation and metrics of going through Bank one account at a time.
+ *
+ * The accounts are fixed when the accrual is created, so accounts opened later
+ * are not included. They are cut into chunks that a ForkJoinPool sweeps in
+ * parallel. A chunk first reads its balances into a column and computes every
+ * change from it in one pass, then applies them one account at a time under
+ * its TransferEngine lock, computing again for any balance that moved in
+ * between. A change never takes a balance below zero.
+ *
+ * An accrual remembers how far each chunk got. If run is interrupted, or a
+ * change fails, calling run again carries on with the accounts that were not
+ * changed yet, and no account is ever changed twice.
+ */
+public final class Accrual {
+
+    private static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    /**
+     * Computes the change to one balance
+     */
+    @FunctionalInterface
+    public interface Rule {
+
+        /**
+         * @return cents to add to balanceCents, negative to take cents away
+         */
+        long changeCents(long balanceCents);
+
+    }
+
+    /**
+     * Interest of ratePerBillion times the balance, rounded as Money.applyRate
+     * does
+     *
+     * @throws IllegalArgumentException if ratePerBillion is negative
+     */
+    public static Rule interest(long ratePerBillion) {
+        if (ratePerBillion < 0) {
+            throw new IllegalArgumentException("Invalid interest rate");
+        }
+        return balanceCents -> Money.applyRate(balanceCents, ratePerBillion);
+    }
+
+    /**
+     * A fee of feeCents on balances below waivedFromCents. A balance smaller
+     * than the fee is only charged what it has.
+     *
+     * @throws IllegalArgumentException if feeCents is negative
+     */
+    public static Rule fee(long feeCents, long waivedFromCents) {
+        if (feeCents < 0) {
+            throw new IllegalArgumentException("Invalid fee");
+        }
+        return balanceCents -> balanceCents < waivedFromCents ? -feeCents : 0;
+    }
+
+    private final Bank bank;
+    private final Rule rule;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final BankAccount[] accounts;
+    // Per chunk, the index of the next account to change
+    private final int[] next;
+    private final LongAdder changed = new LongAdder();
+    private final LongAdder netCents = new LongAdder();
+    // Set to stop the chunks early when run is interrupted
+    private volatile boolean stopping;
+    // First change that failed in this run, thrown once every chunk finished.
+    // Kept here rather than thrown from the chunk, since ForkJoinTask may hand
+    // back a copy of an exception thrown on another worker.
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    /**
+     * Accrues on the common ForkJoinPool
+     */
+    public Accrual(Bank bank, Rule rule) {
+        this(bank, rule, ForkJoinPool.commonPool());
+    }
+
+    public Accrual(Bank bank, Rule rule, ForkJoinPool pool) {
+        this(bank, rule, pool, DEFAULT_CHUNK_SIZE);
+    }
+
+    Accrual(Bank bank, Rule rule, ForkJoinPool pool, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Invalid chunk size");
+        }
+        this.bank = bank;
+        this.rule = rule;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        List<BankAccount> list = new ArrayList<>(bank.size());
+        bank.forEach(list::add);
+        accounts = list.toArray(new BankAccount[0]);
+        next = new int[(int) ((accounts.length + (long) chunkSize - 1) / chunkSize)];
+        for (int chunk = 0; chunk < next.length; chunk++) {
+            next[chunk] = chunk * chunkSize;
+        }
+    }
+
+    // The change rule makes to balanceCents, never below zero
+    static long change(Rule rule, long balanceCents) {
+        return Math.max(rule.changeCents(balanceCents), -balanceCents);
+    }
+
+    /**
+     * Changes every account not changed yet, then waits for the journal as
+     * durability asks. Does nothing once every account was changed.
+     *
+     * @throws InterruptedException if interrupted while waiting. The chunks
+     *                              stop after the account they are on, and
+     *                              run can be called again to finish.
+     * @throws ArithmeticException  if a balance would overflow, after every
+     *                              other chunk finished
+     * @throws RuntimeException     whatever the rule throws, likewise after
+     *                              every other chunk finished
+     * @throws java.io.UncheckedIOException if the journal cannot be written
+     */
+    public synchronized void run(Durability durability) throws InterruptedException {
+        ForkJoinTask<Void> sweep = pool.submit(new Chunks(0, next.length));
+        try {
+            sweep.get();
+        } catch (InterruptedException e) {
+            stopping = true;
+            sweep.quietlyJoin();
+            stopping = false;
+            throw e;
+        } catch (ExecutionException e) {
+            // Chunks leave what they throw in failure, so nothing should get here
+            throw new IllegalStateException(e.getCause());
+        }
+        Throwable failed = failure.getAndSet(null);
+        if (failed instanceof Error) {
+            throw (Error) failed;
+        }
+        if (failed != null) {
+            throw (RuntimeException) failed;
+        }
+        bank.awaitJournal(durability);
+    }
+
+    /**
+     * @return true if every account was changed
+     */
+    public boolean isDone() {
+        return changed() == accounts.length;
+    }
+
+    /**
+     * @return accounts the rule was applied to so far, including those it left
+     *         unchanged
+     */
+    public long changed() {
+        return changed.sum();
+    }
+
+    /**
+     * @return cents added to all accounts so far, less cents taken away
+     */
+    public long netCents() {
+        return netCents.sum();
+    }
+
+    // Chunks from (inclusive) to to (exclusive), split in half until one is left
+    private final class Chunks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        Chunks(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Chunks(from, middle), new Chunks(middle, to));
+                return;
+            }
+            if (from < to) {
+                try {
+                    sweep(from);
+                } catch (Error e) {
+                    fail(e);
+                }
+            }
+        }
+    }
+
+    private void fail(Throwable e) {
+        if (!failure.compareAndSet(null, e)) {
+            failure.get().addSuppressed(e);
+        }
+    }
+
+    private void sweep(int chunk) {
+        int start = next[chunk];
+        int end = Math.min(accounts.length, (chunk + 1) * chunkSize);
+        if (start == end) {
+            return;
+        }
+        // The chunk's balances and changes as columns, so computing is one tight loop
+        long[] balances = new long[end - start];
+        long[] changes = new long[end - start];
+        for (int i = start; i < end; i++) {
+            balances[i - start] = accounts[i].getBalanceCents();
+        }
+        for (int i = 0; i < balances.length; i++) {
+            try {
+                changes[i] = change(rule, balances[i]);
+            } catch (RuntimeException e) {
+                // No balance is negative, so the account computes again under its lock and fails in turn
+                balances[i] = -1;
+            }
+        }
+        long net = 0;
+        try {
+            for (int i = start; i < end && !stopping; i++) {
+                // No change needs no lock: the account was accrued when its balance was read
+                if (changes[i - start] != 0 || balances[i - start] < 0) {
+                    net += bank.accrue(accounts[i], balances[i - start], changes[i - start], rule);
+                }
+                next[chunk] = i + 1;
+            }
+        } catch (RuntimeException e) {
+            // The chunk stops at the failed account, the others carry on
+            fail(e);
+        } finally {
+            changed.add(next[chunk] - start);
+            netCents.add(net);
+        }
+    }
+
+}
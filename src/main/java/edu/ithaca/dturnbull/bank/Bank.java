@@ -0,0 +1,577 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Owns a set of accounts, at most one per email. The email index is split into
+ * shards of ConcurrentHashMap, so a resize only ever rehashes one shard.
+ * Opening an account is not free of waiting, though: it holds the new
+ * account's TransferEngine lock stripe while it claims the email, journals it
+ * and gives it a history slot. It therefore waits for postings on accounts
+ * that share the stripe, for a checkpoint's cut, and for the journal's lock.
+ * A new history page is created before the stripe is taken.
+ *
+ * A bank may keep a Journal. Opening accounts and the deposit, withdraw and
+ * transfer methods here are then written to it, and recover rebuilds the bank
+ * from it. Each change is applied and journaled while holding its accounts'
+ * TransferEngine locks, so the journal has every account's changes in the
+ * order they happened. Changes made on a BankAccount directly are not
+ * journaled.
+ *
+ * checkpoint writes a Snapshot of every balance while postings go on. It
+ * briefly takes every TransferEngine lock to start a new checkpoint epoch at a
+ * journal position (the cut). The first change to an account in the new epoch
+ * saves the balance it had before, so the snapshot can still write the
+ * balance as of the cut. Recovery then loads the snapshot and replays only the
+ * journal after the cut.
+ *
+ * A bank may also keep a TransactionHistory of each account's recent postings
+ * through the methods here, recorded under the same locks.
+ *
+ * A PostingCheck, such as a VelocityLimiter, can refuse withdrawals and
+ * transfers through the methods here before any money moves. Debits made on a
+ * BankAccount directly are not checked.
+ */
+public class Bank {
+
+    private static final int DEFAULT_SHARDS = 64;
+
+    private final ConcurrentHashMap<String, BankAccount>[] shards;
+    private final int mask;
+    private final Journal journal;
+    private final TransactionHistory history;
+    private final TransferEngine engine = TransferEngine.DEFAULT;
+    // Current checkpoint epoch, only changed while holding every TransferEngine lock
+    private volatile int epoch;
+    private volatile PostingCheck postingCheck;
+
+    public Bank() {
+        this(DEFAULT_SHARDS, 0, null);
+    }
+
+    public Bank(int shardCount, int expectedAccounts) {
+        this(shardCount, expectedAccounts, null);
+    }
+
+    /**
+     * @param shardCount       number of index shards, rounded up to a power of two
+     * @param expectedAccounts accounts to size the index for up front, may be 0
+     * @param journal          where to write changes, or null for none
+     * @throws IllegalArgumentException if shardCount is not positive or
+     *                                  expectedAccounts is negative
+     */
+    public Bank(int shardCount, int expectedAccounts, Journal journal) {
+        this(shardCount, expectedAccounts, journal, null);
+    }
+
+    /**
+     * @param history where to record recent postings, or null for none. A
+     *                history belongs to one bank.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public Bank(int shardCount, int expectedAccounts, Journal journal, TransactionHistory history) {
+        if (shardCount <= 0 || shardCount > (1 << 16) || expectedAccounts < 0) {
+            throw new IllegalArgumentException("Invalid bank size");
+        }
+        int size = Integer.highestOneBit(shardCount);
+        if (size < shardCount) {
+            size <<= 1;
+        }
+        shards = new ConcurrentHashMap[size];
+        for (int i = 0; i < size; i++) {
+            shards[i] = new ConcurrentHashMap<>(expectedAccounts / size);
+        }
+        mask = size - 1;
+        this.journal = journal;
+        this.history = history;
+    }
+
+    /**
+     * Rebuilds a bank by replaying journal, and keeps journaling to it
+     */
+    public static Bank recover(Journal journal) {
+        return recover(journal, DEFAULT_SHARDS, null);
+    }
+
+    /**
+     * Same as recover(journal), building the bank with shardCount shards and
+     * recording postings from now on in history, as the constructor does. The
+     * history starts empty: the journal does not keep what it would need.
+     */
+    public static Bank recover(Journal journal, int shardCount, TransactionHistory history) {
+        Bank bank = new Bank(shardCount, 0, journal, history);
+        journal.replay(0, bank::replay);
+        return bank;
+    }
+
+    /**
+     * Rebuilds a bank from the latest snapshot in snapshotDirectory and the
+     * journal after it, and keeps journaling to journal. Without a snapshot this
+     * replays the whole journal.
+     *
+     * @throws IOException if the snapshot cannot be read or is corrupt
+     */
+    public static Bank recover(Journal journal, Path snapshotDirectory) throws IOException {
+        return recover(journal, snapshotDirectory, DEFAULT_SHARDS, null);
+    }
+
+    /**
+     * Same as recover(journal, snapshotDirectory), building the bank with
+     * shardCount shards and recording postings from now on in history. The
+     * history starts empty.
+     */
+    public static Bank recover(Journal journal, Path snapshotDirectory, int shardCount, TransactionHistory history)
+            throws IOException {
+        Path latest = Snapshot.latest(snapshotDirectory);
+        if (latest == null) {
+            return recover(journal, shardCount, history);
+        }
+        try (Snapshot.Reader reader = new Snapshot.Reader(latest)) {
+            int expected = (int) Math.min(Integer.MAX_VALUE / 2, reader.accountHint());
+            Bank bank = new Bank(shardCount, expected, journal, history);
+            while (reader.next()) {
+                bank.restore(BankAccount.ofCents(reader.email(), reader.cents()));
+            }
+            journal.replay(reader.cutLsn(), bank::replay);
+            return bank;
+        }
+    }
+
+    // Applies one journal record. Records were validated when written.
+    private void replay(byte type, String email, String otherEmail, long cents, long endLsn) {
+        if (type == Journal.OPEN) {
+            restore(BankAccount.ofCents(email, cents));
+            return;
+        }
+        BankAccount account = find(email);
+        if (account == null) {
+            throw new IllegalStateException("Journal refers to unknown account " + email);
+        }
+        switch (type) {
+            case Journal.DEPOSIT:
+                account.adjustCents(cents);
+                break;
+            case Journal.WITHDRAW:
+                account.adjustCents(-cents);
+                break;
+            case Journal.TRANSFER:
+                BankAccount other = find(otherEmail);
+                if (other == null) {
+                    throw new IllegalStateException("Journal refers to unknown account " + otherEmail);
+                }
+                account.adjustCents(-cents);
+                other.adjustCents(cents);
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    // Adds an account being recovered, before the bank is shared
+    private void restore(BankAccount account) {
+        shardOf(account.getEmail()).put(account.getEmail(), account);
+        if (history != null) {
+            history.allocate(account);
+        }
+    }
+
+    private ConcurrentHashMap<String, BankAccount> shardOf(String email) {
+        int h = email.hashCode();
+        // The shard takes the high bits so each map still sees well spread low bits
+        return shards[(h ^ (h >>> 16)) * 0x9E3779B9 >>> 16 & mask];
+    }
+
+    /**
+     * @return the new account
+     * @throws IllegalArgumentException if email or startingBalance is invalid, or
+     *                                  an account with email already exists
+     */
+    public BankAccount openAccount(String email, double startingBalance) {
+        return register(new BankAccount(email, startingBalance), Durability.NONE);
+    }
+
+    /**
+     * @return the new account
+     * @throws IllegalArgumentException if email is invalid, startingBalanceCents
+     *                                  is negative, or an account with email
+     *                                  already exists
+     */
+    public BankAccount openAccountCents(String email, long startingBalanceCents) {
+        return openAccountCents(email, startingBalanceCents, Durability.NONE);
+    }
+
+    /**
+     * Same as openAccountCents(email, startingBalanceCents), waiting for the
+     * journal as durability asks
+     *
+     * @throws UncheckedIOException if the journal cannot be written
+     */
+    public BankAccount openAccountCents(String email, long startingBalanceCents, Durability durability) {
+        return register(BankAccount.ofCents(email, startingBalanceCents), durability);
+    }
+
+    private BankAccount register(BankAccount account, Durability durability) {
+        if (!tryRegister(account, durability)) {
+            throw new IllegalArgumentException("Account with email " + account.getEmail() + " already exists");
+        }
+        return account;
+    }
+
+    // Adds account, journaling it as durability asks, unless an account with its
+    // email already exists
+    boolean tryRegister(BankAccount account, Durability durability) {
+        String email = account.getEmail();
+        ConcurrentHashMap<String, BankAccount> shard = shardOf(email);
+        long lsn = 0;
+        if (history != null) {
+            // A page can be megabytes, too slow to create holding the stripe
+            history.reserve();
+        }
+        engine.lock(account, account);
+        try {
+            account.createdEpoch = epoch;
+            if (shard.putIfAbsent(email, account) != null) {
+                return false;
+            }
+            // Still holding the account's lock, so no change to it can be journaled before it was opened
+            if (journal != null) {
+                try {
+                    lsn = log(Journal.OPEN, account, null, account.getBalanceCents());
+                } catch (UncheckedIOException e) {
+                    shard.remove(email, account);
+                    throw e;
+                }
+            }
+            if (history != null) {
+                history.allocate(account);
+            }
+        } finally {
+            engine.unlock(account, account);
+        }
+        await(lsn, durability);
+        return true;
+    }
+
+    // Saves account's balance before its first change in this epoch, for a
+    // running checkpoint. Caller holds the account's TransferEngine lock.
+    private void preserve(BankAccount account) {
+        int current = epoch;
+        if (account.checkpointEpoch != current) {
+            account.checkpointCents = account.getBalanceCents();
+            account.checkpointEpoch = current;
+        }
+    }
+
+    /**
+     * Writes a snapshot of every account into directory without stopping
+     * postings, and drops the journal segments it makes unnecessary. Older
+     * snapshots in directory are deleted.
+     *
+     * @return the journal position the snapshot is consistent with
+     */
+    public synchronized long checkpoint(Path directory) throws IOException {
+        int snapshotEpoch;
+        long cutLsn;
+        engine.lockEverything();
+        try {
+            snapshotEpoch = ++epoch;
+            cutLsn = journal == null ? 0 : journal.endLsn();
+        } finally {
+            engine.unlockEverything();
+        }
+        try (Snapshot.Writer writer = new Snapshot.Writer(directory, cutLsn, size())) {
+            for (ConcurrentHashMap<String, BankAccount> shard : shards) {
+                for (BankAccount account : shard.values()) {
+                    if (account.createdEpoch >= snapshotEpoch) {
+                        // Opened after the cut, the journal has it
+                        continue;
+                    }
+                    // Balance first: if it already shows a change after the cut, the saved one is visible too
+                    long cents = account.getBalanceCents();
+                    if (account.checkpointEpoch == snapshotEpoch) {
+                        cents = account.checkpointCents;
+                    }
+                    writer.add(account.getEmail(), cents);
+                }
+            }
+            writer.commit();
+        }
+        // commit returned once the snapshot's name is on disk, so the journal before the cut can go
+        if (journal != null) {
+            journal.truncate(cutLsn);
+        }
+        return cutLsn;
+    }
+
+    /**
+     * @post increases account's balance by cents and journals it
+     * @throws IllegalArgumentException if account is not in this bank or cents is
+     *                                  negative
+     * @throws ArithmeticException      if the balance would overflow
+     * @throws UncheckedIOException     if the journal cannot be written, in which
+     *                                  case the balance is left unchanged
+     */
+    public void deposit(BankAccount account, long cents, Durability durability) {
+        long start = Metrics.start();
+        checkOwned(account);
+        long lsn = 0;
+        engine.lock(account, account);
+        try {
+            preserve(account);
+            account.depositCents(cents, start);
+            if (journal != null) {
+                try {
+                    lsn = log(Journal.DEPOSIT, account, null, cents);
+                } catch (UncheckedIOException e) {
+                    account.adjustCents(-cents);
+                    throw e;
+                }
+            }
+            if (history != null) {
+                history.record(account, TransactionHistory.DEPOSIT, cents, null, System.currentTimeMillis());
+            }
+        } finally {
+            engine.unlock(account, account);
+        }
+        await(lsn, durability);
+    }
+
+    /**
+     * @post reduces account's balance by cents and journals it
+     * @throws IllegalArgumentException   if account is not in this bank or cents
+     *                                    is negative or 0
+     * @throws InsufficientFundsException if cents is greater than the balance
+     * @throws PostingRefusedException    if the PostingCheck refuses it
+     * @throws UncheckedIOException       if the journal cannot be written, in
+     *                                    which case the balance is left unchanged
+     */
+    public void withdraw(BankAccount account, long cents, Durability durability) throws InsufficientFundsException {
+        long start = Metrics.start();
+        checkOwned(account);
+        long lsn = 0;
+        PostingCheck check = postingCheck;
+        engine.lock(account, account);
+        try {
+            // Read under the lock so each account's checks see time in order
+            long now = check == null ? 0 : System.nanoTime();
+            check(check, Metrics.Operation.WITHDRAW, account, cents, now, start);
+            preserve(account);
+            account.withdrawCents(cents, start);
+            if (journal != null) {
+                try {
+                    lsn = log(Journal.WITHDRAW, account, null, cents);
+                } catch (UncheckedIOException e) {
+                    account.adjustCents(cents);
+                    throw e;
+                }
+            }
+            if (check != null) {
+                check.debited(account, cents, now);
+            }
+            if (history != null) {
+                history.record(account, TransactionHistory.WITHDRAWAL, cents, null, System.currentTimeMillis());
+            }
+        } finally {
+            engine.unlock(account, account);
+        }
+        await(lsn, durability);
+    }
+
+    /**
+     * @post moves cents from one account to the other in one atomic step and
+     *       journals it
+     * @throws IllegalArgumentException   if an account is not in this bank or
+     *                                    cents is negative or 0
+     * @throws InsufficientFundsException if cents is greater than from's balance
+     * @throws PostingRefusedException    if the PostingCheck refuses it
+     * @throws ArithmeticException        if to's balance would overflow
+     * @throws UncheckedIOException       if the journal cannot be written, in
+     *                                    which case no money is moved
+     */
+    public void transfer(BankAccount from, BankAccount to, long cents, Durability durability)
+            throws InsufficientFundsException {
+        long start = Metrics.start();
+        checkOwned(from);
+        checkOwned(to);
+        long lsn = 0;
+        PostingCheck check = postingCheck;
+        engine.lock(from, to);
+        try {
+            // Read under the lock so each account's checks see time in order
+            long now = check == null ? 0 : System.nanoTime();
+            check(check, Metrics.Operation.TRANSFER, from, cents, now, start);
+            preserve(from);
+            preserve(to);
+            TransferEngine.transferLocked(from, to, cents, start);
+            if (journal != null) {
+                try {
+                    lsn = log(Journal.TRANSFER, from, to, cents);
+                } catch (UncheckedIOException e) {
+                    to.adjustCents(-cents);
+                    from.adjustCents(cents);
+                    throw e;
+                }
+            }
+            if (check != null) {
+                check.debited(from, cents, now);
+            }
+            if (history != null) {
+                long millis = System.currentTimeMillis();
+                history.record(from, TransactionHistory.TRANSFER_OUT, cents, to, millis);
+                history.record(to, TransactionHistory.TRANSFER_IN, cents, from, millis);
+            }
+        } finally {
+            engine.unlock(from, to);
+        }
+        await(lsn, durability);
+    }
+
+    // Adds change, computed by rule from balanceCents, to account for an
+    // Accrual, computing again if the balance moved since. Journaled and
+    // recorded like a deposit or withdrawal. Returns the change made.
+    long accrue(BankAccount account, long balanceCents, long change, Accrual.Rule rule) {
+        engine.lock(account, account);
+        try {
+            long current = account.getBalanceCents();
+            if (current != balanceCents) {
+                change = Accrual.change(rule, current);
+            }
+            if (change == 0) {
+                return 0;
+            }
+            // Overflow throws before anything changed
+            Math.addExact(current, change);
+            preserve(account);
+            account.adjustCents(change);
+            if (journal != null) {
+                try {
+                    log(change > 0 ? Journal.DEPOSIT : Journal.WITHDRAW, account, null, Math.abs(change));
+                } catch (UncheckedIOException e) {
+                    account.adjustCents(-change);
+                    throw e;
+                }
+            }
+            if (history != null) {
+                history.record(account, change > 0 ? TransactionHistory.DEPOSIT : TransactionHistory.WITHDRAWAL,
+                        Math.abs(change), null, System.currentTimeMillis());
+            }
+            return change;
+        } finally {
+            engine.unlock(account, account);
+        }
+    }
+
+    // Waits as durability asks for everything journaled so far
+    void awaitJournal(Durability durability) {
+        if (journal != null) {
+            await(journal.endLsn(), durability);
+        }
+    }
+
+    // Completes once everything journaled so far is as durable as durability
+    // asks, without blocking. Fails with UncheckedIOException as await would.
+    CompletableFuture<Void> whenJournaled(Durability durability) {
+        if (journal == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        journal.whenDurable(journal.endLsn(), durability).whenComplete((ignored, e) -> {
+            if (e == null) {
+                result.complete(null);
+            } else {
+                result.completeExceptionally(new UncheckedIOException((IOException) e));
+            }
+        });
+        return result;
+    }
+
+    // Runs check, if any, on a debit of cents from account. Invalid amounts are
+    // left for the debit itself to reject. Caller holds account's lock.
+    private static void check(PostingCheck check, Metrics.Operation operation, BankAccount account, long cents,
+            long now, long start) {
+        if (check == null || cents <= 0) {
+            return;
+        }
+        try {
+            check.check(account, cents, now);
+        } catch (PostingRefusedException e) {
+            Metrics.reject(operation, start, Metrics.Reason.REFUSED);
+            throw e;
+        }
+    }
+
+    private void checkOwned(BankAccount account) {
+        if (find(account.getEmail()) != account) {
+            throw new IllegalArgumentException("Account " + account.getEmail() + " does not belong to this bank");
+        }
+    }
+
+    private long log(byte type, BankAccount account, BankAccount other, long cents) {
+        try {
+            return journal.append(type, account.getEmail(), other == null ? null : other.getEmail(), cents);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void await(long lsn, Durability durability) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.awaitDurable(lsn, durability);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Sets the check run before every withdrawal and transfer, or null for
+     * none. Postings already running may still use the previous one.
+     */
+    public void setPostingCheck(PostingCheck check) {
+        postingCheck = check;
+    }
+
+    /**
+     * @return this bank's PostingCheck, or null if it has none
+     */
+    public PostingCheck postingCheck() {
+        return postingCheck;
+    }
+
+    /**
+     * @return this bank's TransactionHistory, or null if it keeps none
+     */
+    public TransactionHistory history() {
+        return history;
+    }
+
+    /**
+     * @return the account with email, or null if there is none
+     */
+    public BankAccount find(String email) {
+        return shardOf(email).get(email);
+    }
+
+    public int size() {
+        int size = 0;
+        for (ConcurrentHashMap<String, BankAccount> shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    // Visits every account. Accounts opened during the call may or may not be seen.
+    public void forEach(Consumer<BankAccount> action) {
+        for (ConcurrentHashMap<String, BankAccount> shard : shards) {
+            shard.values().forEach(action);
+        }
+    }
+
+}
@@ -1,24 +1,96 @@
 package edu.ithaca.dturnbull.bank;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Balance updates are lock-free compare-and-set loops on the cents balance, so
+ * one account can be used from many threads without losing updates or going
+ * below zero.
+ *
+ * The constructor, deposits, withdrawals, transfers and the validation methods
+ * are counted and timed in Metrics when it is enabled.
+ */
 public class BankAccount {
 
+    private static final VarHandle BALANCE_CENTS;
+
+    static {
+        try {
+            BALANCE_CENTS = MethodHandles.lookup().findVarHandle(BankAccount.class, "balanceCents", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private String email;
-    private double balance;
+    // Balance in cents, see Money. Only changed through BALANCE_CENTS
+    private volatile long balanceCents;
+
+    // Checkpoint bookkeeping for Bank, only written under this account's
+    // TransferEngine lock: the checkpoint epoch the account was opened in, and
+    // the balance from before its first change in checkpointEpoch
+    int createdEpoch;
+    long checkpointCents;
+    volatile int checkpointEpoch;
+    // Slot in the bank's TransactionHistory, or -1 for none
+    int historySlot = -1;
+    // The VelocityLimiter that last used this account and its slot there.
+    // Only touched by that limiter's calls for this account, which never overlap.
+    VelocityLimiter velocityLimiter;
+    int velocitySlot;
 
     /**
      * @throws IllegalArgumentException if email is invalid
      */
     public BankAccount(String email, double startingBalance) {
-        if (isEmailValid(email) && isAmountValid(startingBalance)) {
-            this.email = email;
-            this.balance = startingBalance;
-        } else {
+        long start = Metrics.start();
+        if (!isEmailValid(email)) {
+            Metrics.reject(Metrics.Operation.CONSTRUCT, start, Metrics.Reason.INVALID_EMAIL);
+            throw new IllegalArgumentException("Email address: " + email + " is invalid, cannot create account");
+        }
+        if (!isAmountValid(startingBalance)) {
+            Metrics.reject(Metrics.Operation.CONSTRUCT, start, Metrics.Reason.INVALID_AMOUNT);
             throw new IllegalArgumentException("Email address: " + email + " is invalid, cannot create account");
         }
+        this.email = email;
+        this.balanceCents = Money.toCents(startingBalance);
+        Metrics.end(Metrics.Operation.CONSTRUCT, start);
+    }
+
+    /**
+     * Creates an account with a starting balance given in cents
+     * 
+     * @throws IllegalArgumentException if email is invalid or the balance is
+     *                                  negative
+     */
+    public static BankAccount ofCents(String email, long startingBalanceCents) {
+        if (startingBalanceCents < 0) {
+            throw new IllegalArgumentException("Invalid starting balance");
+        }
+        BankAccount account = new BankAccount(email, 0.0);
+        account.balanceCents = startingBalanceCents;
+        return account;
+    }
+
+    // Same as ofCents for an email the caller already checked with
+    // EmailValidator, such as AccountImporter. Not counted in Metrics.
+    static BankAccount ofValidatedCents(String email, long startingBalanceCents) {
+        BankAccount account = new BankAccount();
+        account.email = email;
+        account.balanceCents = startingBalanceCents;
+        return account;
+    }
+
+    private BankAccount() {
     }
 
     public double getBalance() {
-        return balance;
+        return Money.toAmount(balanceCents);
+    }
+
+    public long getBalanceCents() {
+        return balanceCents;
     }
 
     public String getEmail() {
@@ -32,106 +104,88 @@ public class BankAccount {
      *       throws an InsufficientFundsException if amount is greater than balance
      */
     public void withdraw(double amount) throws InsufficientFundsException {
+        long start = Metrics.start();
         if (isAmountValid(amount)) {
-            if (amount == 0) {
-                throw new IllegalArgumentException("Must enter non-negative withdrawal amount");
-            }
-            if (amount <= balance) {
-                balance -= amount;
-            } else {
-                throw new InsufficientFundsException("Not enough money");
-            }
+            withdrawCents(Money.toCents(amount), start);
         } else {
+            Metrics.reject(Metrics.Operation.WITHDRAW, start, Metrics.Reason.INVALID_AMOUNT);
             throw new IllegalArgumentException("Invalid withdrawal amount");
         }
     }
 
-    public static boolean isEmailValid(String email) {
-        // Checks for empty/blank email
-        if (email.isBlank()) {
-            return false;
-        }
-
-        // Find @ symbol, right most period
-        int atIndex = email.indexOf('@');
-        int lastPeriodIndex = email.lastIndexOf('.');
-        if (atIndex == -1 || lastPeriodIndex == -1 || lastPeriodIndex <= atIndex) {
-            return false;
-        }
-
-        // Check if prefix is missing
-        if (atIndex == 0) {
-            return false;
-        }
+    /**
+     * @post reduces the balance by cents if cents is positive and no more than
+     *       balance
+     * @throws IllegalArgumentException   if cents is negative or 0
+     * @throws InsufficientFundsException if cents is greater than balance
+     */
+    public void withdrawCents(long cents) throws InsufficientFundsException {
+        withdrawCents(cents, Metrics.start());
+    }
 
-        // Deal with prefix
-        for (int i = 0; i < atIndex; i++) {
-            char c = email.charAt(i);
-            // Check alphaNum or special char
-            boolean charAlphaNum = Character.isLetterOrDigit(c);
-            if (!charAlphaNum) {
-                if (!isPrefixSpecial(c)) {
-                    // Neither alphaNum or valid special
-                    return false;
-                } else {
-                    // Checking multiple special chars in a row, or first char
-                    if (!Character.isLetterOrDigit(email.charAt(i + 1)) || i == 0) {
-                        return false;
-                    }
-                    // Incrementing an additional time as no need to recheck if its valid character
-                    i++;
+    // withdrawCents counted in Metrics as started at start, or not at all if
+    // start is 0
+    void withdrawCents(long cents, long start) throws InsufficientFundsException {
+        switch (tryWithdrawCents(cents)) {
+            case PostingBatch.OK:
+                Metrics.end(Metrics.Operation.WITHDRAW, start);
+                return;
+            case PostingBatch.INSUFFICIENT_FUNDS:
+                Metrics.reject(Metrics.Operation.WITHDRAW, start, Metrics.Reason.INSUFFICIENT_FUNDS);
+                throw new InsufficientFundsException("Not enough money");
+            default:
+                Metrics.reject(Metrics.Operation.WITHDRAW, start, Metrics.Reason.INVALID_AMOUNT);
+                if (cents == 0) {
+                    throw new IllegalArgumentException("Must enter non-negative withdrawal amount");
                 }
-            }
+                throw new IllegalArgumentException("Invalid withdrawal amount");
         }
+    }
 
-        // Deal with domain
-        if (lastPeriodIndex + 2 >= email.length()) {
-            // Last portion of domain too small
-            return false;
+    // Same as withdrawCents but returns a PostingBatch result code instead of
+    // throwing
+    byte tryWithdrawCents(long cents) {
+        if (cents <= 0) {
+            return PostingBatch.INVALID_AMOUNT;
         }
-        for (int i = atIndex + 1; i < email.length(); i++) {
-            char c = email.charAt(i);
-            // Check alphaNum, dash
-            if (!(Character.isLetterOrDigit(c)) && !(c == '-')) {
-                // See if its the one allowed period
-                if (!(c == '.' && i == lastPeriodIndex)) {
-                    return false;
-                }
+        long balance;
+        do {
+            balance = balanceCents;
+            if (cents > balance) {
+                return PostingBatch.INSUFFICIENT_FUNDS;
             }
-        }
-
-        return true;
+        } while (!BALANCE_CENTS.compareAndSet(this, balance, balance - cents));
+        return PostingBatch.OK;
+    }
 
+    // See EmailValidator for the rules
+    public static boolean isEmailValid(String email) {
+        long start = Metrics.start();
+        boolean valid = EmailValidator.isValid(email);
+        if (valid) {
+            Metrics.end(Metrics.Operation.EMAIL_VALIDATION, start);
+        } else {
+            Metrics.reject(Metrics.Operation.EMAIL_VALIDATION, start, Metrics.Reason.INVALID_EMAIL);
+        }
+        return valid;
     }
 
     // Returns true if it is a special character valid in the prefix
     public static boolean isPrefixSpecial(char c) {
-        // Everything in the wiki link under special characters, minus # as it was
-        // included in a test as invalid...
-        char[] prefixSpecial = { '.', '!', '$', '%', '&', '\'', '*', '+', '-', '/', '=', '?', '^', '_', '`', '{', '|',
-                '}', '~' };
-        for (char special : prefixSpecial) {
-            if (special == c) {
-                return true;
-            }
-        }
-        return false;
+        return EmailValidator.isPrefixSpecial(c);
     }
 
     // Takes a double and returns true if the amount is positive and has two decimal
     // points or less, and false otherwise.
     public static boolean isAmountValid(double amount) {
-        if (amount < 0) {
-            return false;
-        }
-        String amountString = Double.toString(amount);
-        if (amountString.contains(".")) {
-            String[] parts = amountString.split("\\.");
-            if (parts[1].length() > 2) {
-                return false;
-            }
+        long start = Metrics.start();
+        boolean valid = Money.isValidAmount(amount);
+        if (valid) {
+            Metrics.end(Metrics.Operation.AMOUNT_VALIDATION, start);
+        } else {
+            Metrics.reject(Metrics.Operation.AMOUNT_VALIDATION, start, Metrics.Reason.INVALID_AMOUNT);
         }
-        return true;
+        return valid;
     }
 
     /**
@@ -139,29 +193,134 @@ public class BankAccount {
      *       throws an IllegalArgumentException if amount is valid
      */
     public void deposit(double amount) {
+        long start = Metrics.start();
         if (isAmountValid(amount)) {
-            balance += amount;
+            depositCents(Money.toCents(amount), start);
         } else {
+            Metrics.reject(Metrics.Operation.DEPOSIT, start, Metrics.Reason.INVALID_AMOUNT);
             throw new IllegalArgumentException("Invalid deposit amount");
         }
     }
 
+    /**
+     * @post increases the balance by cents if cents is non-negative
+     * @throws IllegalArgumentException if cents is negative
+     * @throws ArithmeticException      if the balance would overflow
+     */
+    public void depositCents(long cents) {
+        depositCents(cents, Metrics.start());
+    }
+
+    // depositCents counted in Metrics as started at start, or not at all if
+    // start is 0
+    void depositCents(long cents, long start) {
+        switch (tryDepositCents(cents)) {
+            case PostingBatch.OK:
+                Metrics.end(Metrics.Operation.DEPOSIT, start);
+                return;
+            case PostingBatch.OVERFLOW:
+                Metrics.reject(Metrics.Operation.DEPOSIT, start, Metrics.Reason.OVERFLOW);
+                throw new ArithmeticException("long overflow");
+            default:
+                Metrics.reject(Metrics.Operation.DEPOSIT, start, Metrics.Reason.INVALID_AMOUNT);
+                throw new IllegalArgumentException("Invalid deposit amount");
+        }
+    }
+
+    // Same as depositCents but returns a PostingBatch result code instead of
+    // throwing
+    byte tryDepositCents(long cents) {
+        if (cents < 0) {
+            return PostingBatch.INVALID_AMOUNT;
+        }
+        long balance;
+        do {
+            balance = balanceCents;
+            if (balance > Long.MAX_VALUE - cents) {
+                return PostingBatch.OVERFLOW;
+            }
+        } while (!BALANCE_CENTS.compareAndSet(this, balance, balance + cents));
+        return PostingBatch.OK;
+    }
+
+    // Applies the postings chained from first through next (-1 ends the chain),
+    // all for this account, against one read of the balance and publishes them
+    // with a single compare-and-set, retrying the whole run if another thread
+    // got in between
+    void applyRun(long[] cents, byte[] types, int[] next, int first, byte[] results) {
+        while (true) {
+            long start = balanceCents;
+            long balance = start;
+            for (int i = first; i >= 0; i = next[i]) {
+                long amount = cents[i];
+                byte result;
+                if (types[i] == PostingBatch.DEPOSIT) {
+                    if (amount < 0) {
+                        result = PostingBatch.INVALID_AMOUNT;
+                    } else if (balance > Long.MAX_VALUE - amount) {
+                        result = PostingBatch.OVERFLOW;
+                    } else {
+                        balance += amount;
+                        result = PostingBatch.OK;
+                    }
+                } else if (types[i] == PostingBatch.WITHDRAW) {
+                    if (amount <= 0) {
+                        result = PostingBatch.INVALID_AMOUNT;
+                    } else if (amount > balance) {
+                        result = PostingBatch.INSUFFICIENT_FUNDS;
+                    } else {
+                        balance -= amount;
+                        result = PostingBatch.OK;
+                    }
+                } else {
+                    result = PostingBatch.INVALID_TYPE;
+                }
+                results[i] = result;
+            }
+            if (balance == start || BALANCE_CENTS.compareAndSet(this, start, balance)) {
+                return;
+            }
+        }
+    }
+
     /**
      * @post transfers amount from this account to bankAccount if amount is valid
      * @throws IllegalArgumentException   if amount is invalid
      * @throws InsufficientFundsException if amount is greater than balance
      */
     public void transfer(BankAccount bankAccount, double amount) throws InsufficientFundsException {
+        long start = Metrics.start();
         if (isAmountValid(amount)) {
-            if (amount <= balance) {
-                this.withdraw(amount);
-                bankAccount.deposit(amount);
-            } else {
-                throw new InsufficientFundsException("Not enough money");
-            }
+            transferCents(bankAccount, Money.toCents(amount), start);
         } else {
+            Metrics.reject(Metrics.Operation.TRANSFER, start, Metrics.Reason.INVALID_AMOUNT);
             throw new IllegalArgumentException("Invalid transfer amount");
         }
     }
 
+    /**
+     * @post transfers cents from this account to bankAccount in one atomic step,
+     *       see TransferEngine
+     * @throws IllegalArgumentException   if cents is negative or 0
+     * @throws InsufficientFundsException if cents is greater than balance
+     * @throws ArithmeticException        if bankAccount's balance would overflow
+     */
+    public void transferCents(BankAccount bankAccount, long cents) throws InsufficientFundsException {
+        transferCents(bankAccount, cents, Metrics.start());
+    }
+
+    private void transferCents(BankAccount bankAccount, long cents, long start) throws InsufficientFundsException {
+        if (cents < 0) {
+            Metrics.reject(Metrics.Operation.TRANSFER, start, Metrics.Reason.INVALID_AMOUNT);
+            throw new IllegalArgumentException("Invalid transfer amount");
+        }
+        TransferEngine.DEFAULT.transfer(this, bankAccount, cents, start);
+    }
+
+    // Adds delta to the balance with no checks, for undoing a change that was
+    // already validated
+    void adjustCents(long delta) {
+        BALANCE_CENTS.getAndAdd(this, delta);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package edu.ithaca.dturnbull.bank;
+
+/**
+ * How long a journaled change waits before its call returns.
+ */
+public enum Durability {
+    // Written to the mapped segment, survives the process dying but not the machine
+    NONE,
+    // Waits for the journal's next batched fsync
+    GROUP,
+    // Forces the journal to disk before returning
+    SYNC
+}
@@ -0,0 +1,87 @@
+package edu.ithaca.dturnbull.bank;
+
+/**
+ * Email rules behind BankAccount.isEmailValid, checked against a precomputed
+ * table of ASCII character classes. Characters outside ASCII fall back to
+ * Character.isLetterOrDigit, so results are the same as the per-character
+ * checks the rules were written with.
+ */
+public final class EmailValidator {
+
+    private static final byte LETTER_OR_DIGIT = 1;
+    private static final byte PREFIX_SPECIAL = 2;
+
+    private static final byte[] ASCII_CLASSES = new byte[128];
+
+    static {
+        for (char c = 0; c < 128; c++) {
+            if (Character.isLetterOrDigit(c)) {
+                ASCII_CLASSES[c] |= LETTER_OR_DIGIT;
+            }
+        }
+        // Everything in the wiki link under special characters, minus # as it was
+        // included in a test as invalid...
+        for (char c : ".!$%&'*+-/=?^_`{|}~".toCharArray()) {
+            ASCII_CLASSES[c] |= PREFIX_SPECIAL;
+        }
+    }
+
+    private EmailValidator() {
+    }
+
+    private static boolean isLetterOrDigit(char c) {
+        if (c < 128) {
+            return (ASCII_CLASSES[c] & LETTER_OR_DIGIT) != 0;
+        }
+        return Character.isLetterOrDigit(c);
+    }
+
+    // Returns true if it is a special character valid in the prefix
+    public static boolean isPrefixSpecial(char c) {
+        return c < 128 && (ASCII_CLASSES[c] & PREFIX_SPECIAL) != 0;
+    }
+
+    public static boolean isValid(String email) {
+        // Find @ symbol, right most period. A blank email has neither.
+        int atIndex = email.indexOf('@');
+        int lastPeriodIndex = email.lastIndexOf('.');
+        if (atIndex == -1 || lastPeriodIndex == -1 || lastPeriodIndex <= atIndex) {
+            return false;
+        }
+
+        // Check if prefix is missing
+        if (atIndex == 0) {
+            return false;
+        }
+
+        // Deal with prefix
+        for (int i = 0; i < atIndex; i++) {
+            char c = email.charAt(i);
+            if (!isLetterOrDigit(c)) {
+                // Special char must not be first and must be followed by alphaNum,
+                // which then needs no recheck
+                if (!isPrefixSpecial(c) || i == 0 || !isLetterOrDigit(email.charAt(i + 1))) {
+                    return false;
+                }
+                i++;
+            }
+        }
+
+        // Deal with domain
+        int length = email.length();
+        if (lastPeriodIndex + 2 >= length) {
+            // Last portion of domain too small
+            return false;
+        }
+        for (int i = atIndex + 1; i < length; i++) {
+            char c = email.charAt(i);
+            // alphaNum, dash or the one allowed period
+            if (!isLetterOrDigit(c) && c != '-' && i != lastPeriodIndex) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+}
@@ -0,0 +1,549 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log of account changes, stored in fixed-size
+ * memory-mapped segment files. A position in the log (LSN) is the segment's
+ * base plus the offset in it. Each record is
+ * [int payload length][int CRC32 of payload][payload], and a zero length or a
+ * bad checksum ends a segment, so a write torn by a crash is ignored.
+ *
+ * Appends only copy into the mapped segment. A background thread forces
+ * written segments to disk at least every flush interval, and right away when
+ * a GROUP caller is waiting. GROUP callers that arrive while a force is running
+ * all share the next one. Callers that must not block ask for a future with
+ * whenDurable instead.
+ */
+public class Journal implements Closeable {
+
+    // Record types
+    static final byte OPEN = 1;
+    static final byte DEPOSIT = 2;
+    static final byte WITHDRAW = 3;
+    static final byte TRANSFER = 4;
+
+    private static final int HEADER_SIZE = 8;
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    /**
+     * Receives records in log order during replay
+     */
+    public interface Visitor {
+        // otherEmail is only set for TRANSFER records, endLsn is where the next record starts
+        void visit(byte type, String email, String otherEmail, long cents, long endLsn);
+    }
+
+    // A whenDurable future and the position it waits for
+    private static final class Waiter implements Comparable<Waiter> {
+        final long lsn;
+        final CompletableFuture<Void> future;
+
+        Waiter(long lsn, CompletableFuture<Void> future) {
+            this.lsn = lsn;
+            this.future = future;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            return Long.compare(lsn, other.lsn);
+        }
+    }
+
+    private static class Segment {
+        final long baseLsn;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+
+        Segment(long baseLsn, FileChannel channel, MappedByteBuffer buffer) {
+            this.baseLsn = baseLsn;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long flushIntervalNanos;
+
+    // Guarded by this
+    private final List<Segment> segments = new ArrayList<>();
+    private final CRC32 crc = new CRC32();
+    private byte[] payload = new byte[256];
+    private long endLsn;
+
+    // Only one thread forces at a time. Blocking callers wait on locks rather
+    // than monitors, so a virtual thread waiting here unmounts from its carrier.
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // Signalled when durableLsn moves or a flush fails, waited on by GROUP callers
+    private final ReentrantLock durableLock = new ReentrantLock();
+    private final Condition durableChanged = durableLock.newCondition();
+    // Futures from whenDurable, lowest lsn first. Guarded by durableLock.
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>();
+    // Waited on by the flusher between forces
+    private final Object flushRequest = new Object();
+    private boolean flushRequested;
+    private volatile long durableLsn;
+    // Set when a background fsync fails, so GROUP callers do not wait forever
+    private volatile IOException flushFailure;
+    private volatile boolean closed;
+    private final Thread flusher;
+
+    /**
+     * Opens the journal in directory, creating it if needed, and continues after
+     * the last intact record.
+     *
+     * @param segmentSize        bytes per segment file, at least 1024
+     * @param flushIntervalMicros longest time a written change stays unforced
+     * @throws IllegalArgumentException if segmentSize is too small or
+     *                                  flushIntervalMicros is not positive
+     */
+    public Journal(Path directory, int segmentSize, long flushIntervalMicros) throws IOException {
+        if (segmentSize < 1024 || flushIntervalMicros <= 0) {
+            throw new IllegalArgumentException("Invalid journal settings");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.flushIntervalNanos = TimeUnit.MICROSECONDS.toNanos(flushIntervalMicros);
+        Files.createDirectories(directory);
+
+        List<Long> bases = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> name.substring(0, name.length() - SEGMENT_SUFFIX.length()))
+                    .forEach(base -> bases.add(Long.parseLong(base)));
+        }
+        bases.sort(null);
+        for (long base : bases) {
+            segments.add(map(base));
+        }
+        if (segments.isEmpty()) {
+            segments.add(map(0));
+            endLsn = 0;
+        } else {
+            Segment last = segments.get(segments.size() - 1);
+            int end = scanEnd(last.buffer);
+            // Clear whatever a torn write left behind so it cannot pass for a record later
+            for (int i = end; i < segmentSize; i++) {
+                last.buffer.put(i, (byte) 0);
+            }
+            endLsn = last.baseLsn + end;
+        }
+        durableLsn = endLsn;
+
+        flusher = new Thread(this::runFlusher, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    public Journal(Path directory) throws IOException {
+        this(directory, 64 << 20, 1_000);
+    }
+
+    private Path segmentPath(long baseLsn) {
+        return directory.resolve(String.format("%020d", baseLsn) + SEGMENT_SUFFIX);
+    }
+
+    private Segment map(long baseLsn) throws IOException {
+        Path path = segmentPath(baseLsn);
+        boolean created = !Files.exists(path);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            if (created) {
+                // Forcing only the records later would leave a crash free to lose the
+                // file's size or its name, and the records with them
+                channel.force(true);
+                syncDirectory(directory);
+            }
+            return new Segment(baseLsn, channel, buffer);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Forces directory's entries, such as files just created, renamed or
+     * deleted in it, to disk
+     */
+    static void syncDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    // Offset just past the last intact record in buffer
+    private int scanEnd(MappedByteBuffer buffer) {
+        int offset = 0;
+        while (true) {
+            int length = recordLength(buffer, offset);
+            if (length < 0) {
+                return offset;
+            }
+            offset += HEADER_SIZE + length;
+        }
+    }
+
+    // Payload length of the intact record at offset, or -1 if there is none
+    private int recordLength(MappedByteBuffer buffer, int offset) {
+        if (offset + HEADER_SIZE > segmentSize) {
+            return -1;
+        }
+        int length = buffer.getInt(offset);
+        if (length <= 0 || length > segmentSize - offset - HEADER_SIZE) {
+            return -1;
+        }
+        CRC32 check = new CRC32();
+        check.update(buffer.slice(offset + HEADER_SIZE, length));
+        return (int) check.getValue() == buffer.getInt(offset + 4) ? length : -1;
+    }
+
+    /**
+     * Appends a record. The record is durable once durableLsn reaches the
+     * returned position, see awaitDurable.
+     *
+     * @return the position just after the record
+     * @throws IOException if a new segment cannot be created or the journal is
+     *                     closed
+     */
+    synchronized long append(byte type, String email, String otherEmail, long cents) throws IOException {
+        if (closed) {
+            throw new IOException("Journal is closed");
+        }
+        byte[] emailBytes = email.getBytes(StandardCharsets.UTF_8);
+        byte[] otherBytes = otherEmail == null ? new byte[0] : otherEmail.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 8 + 2 + emailBytes.length + 2 + otherBytes.length;
+        if (emailBytes.length > Short.MAX_VALUE || otherBytes.length > Short.MAX_VALUE
+                || HEADER_SIZE + length > segmentSize) {
+            throw new IllegalArgumentException("Email too long to journal");
+        }
+        if (payload.length < length) {
+            payload = new byte[Math.max(length, payload.length * 2)];
+        }
+        payload[0] = type;
+        for (int i = 0; i < 8; i++) {
+            payload[1 + i] = (byte) (cents >>> (56 - 8 * i));
+        }
+        int at = writeBytes(emailBytes, 9);
+        writeBytes(otherBytes, at);
+        crc.reset();
+        crc.update(payload, 0, length);
+
+        Segment segment = segments.get(segments.size() - 1);
+        int offset = (int) (endLsn - segment.baseLsn);
+        if (offset + HEADER_SIZE + length > segmentSize) {
+            // The rest of this segment stays zero, which readers take as its end
+            segment = map(segment.baseLsn + segmentSize);
+            segments.add(segment);
+            offset = 0;
+        }
+        segment.buffer.putInt(offset, length);
+        segment.buffer.putInt(offset + 4, (int) crc.getValue());
+        segment.buffer.put(offset + HEADER_SIZE, payload, 0, length);
+        endLsn = segment.baseLsn + offset + HEADER_SIZE + length;
+        return endLsn;
+    }
+
+    private int writeBytes(byte[] bytes, int at) {
+        payload[at] = (byte) (bytes.length >>> 8);
+        payload[at + 1] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, payload, at + 2, bytes.length);
+        return at + 2 + bytes.length;
+    }
+
+    /**
+     * Returns once the journal up to lsn is as durable as durability asks for
+     *
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    void awaitDurable(long lsn, Durability durability) throws IOException {
+        switch (durability) {
+            case NONE:
+                return;
+            case SYNC:
+                flush(lsn);
+                return;
+            default:
+                if (durableLsn >= lsn) {
+                    return;
+                }
+                synchronized (flushRequest) {
+                    flushRequested = true;
+                    flushRequest.notify();
+                }
+                durableLock.lock();
+                try {
+                    while (durableLsn < lsn) {
+                        if (flushFailure != null) {
+                            throw new IOException("Group commit failed", flushFailure);
+                        }
+                        if (closed) {
+                            throw new IOException("Journal is closed");
+                        }
+                        try {
+                            durableChanged.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new InterruptedIOException("Interrupted waiting for group commit");
+                        }
+                    }
+                } finally {
+                    durableLock.unlock();
+                }
+        }
+    }
+
+    /**
+     * Like awaitDurable without blocking: the returned future completes once
+     * the journal up to lsn is durable, and fails with an IOException if a
+     * force fails or the journal is closed first. SYNC asks the background
+     * thread for a force right away, as GROUP does. The future is completed by
+     * the thread that forced, usually the background one, so dependent work
+     * that is slow belongs in an async stage.
+     */
+    CompletableFuture<Void> whenDurable(long lsn, Durability durability) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (durability == Durability.NONE || durableLsn >= lsn) {
+            future.complete(null);
+            return future;
+        }
+        boolean waiting;
+        durableLock.lock();
+        try {
+            // Checked under durableLock, so the next signalDurableChanged sees the waiter
+            waiting = durableLsn < lsn && flushFailure == null && !closed;
+            if (waiting) {
+                waiters.add(new Waiter(lsn, future));
+            }
+        } finally {
+            durableLock.unlock();
+        }
+        if (!waiting) {
+            if (durableLsn >= lsn) {
+                future.complete(null);
+            } else {
+                future.completeExceptionally(flushFailure != null
+                        ? new IOException("Group commit failed", flushFailure)
+                        : new IOException("Journal is closed"));
+            }
+            return future;
+        }
+        synchronized (flushRequest) {
+            flushRequested = true;
+            flushRequest.notify();
+        }
+        return future;
+    }
+
+    // Forces everything written so far, if lsn is not durable yet
+    private void flush(long lsn) throws IOException {
+        flushLock.lock();
+        try {
+            long from = durableLsn;
+            if (from >= lsn) {
+                return;
+            }
+            long to;
+            List<Segment> dirty = new ArrayList<>();
+            synchronized (this) {
+                to = endLsn;
+                for (Segment segment : segments) {
+                    if (segment.baseLsn + segmentSize > from) {
+                        dirty.add(segment);
+                    }
+                }
+            }
+            for (Segment segment : dirty) {
+                int start = (int) Math.max(0, from - segment.baseLsn);
+                int end = (int) Math.min(segmentSize, to - segment.baseLsn);
+                if (end > start) {
+                    segment.buffer.force(start, end - start);
+                }
+            }
+            durableLsn = to;
+        } finally {
+            flushLock.unlock();
+        }
+        signalDurableChanged();
+    }
+
+    private void signalDurableChanged() {
+        durableLock.lock();
+        try {
+            durableChanged.signalAll();
+        } finally {
+            durableLock.unlock();
+        }
+        completeWaiters();
+    }
+
+    // Completes the whenDurable futures that are durable now, or fails them all
+    // once they never can be
+    private void completeWaiters() {
+        List<Waiter> done = new ArrayList<>();
+        IOException failed = flushFailure;
+        boolean gone = failed != null || closed && !flusher.isAlive();
+        durableLock.lock();
+        try {
+            while (!waiters.isEmpty() && (gone || waiters.peek().lsn <= durableLsn)) {
+                done.add(waiters.poll());
+            }
+        } finally {
+            durableLock.unlock();
+        }
+        // Outside the lock, since completing runs the futures' dependents
+        for (Waiter waiter : done) {
+            if (waiter.lsn <= durableLsn) {
+                waiter.future.complete(null);
+            } else if (failed != null) {
+                waiter.future.completeExceptionally(new IOException("Group commit failed", failed));
+            } else {
+                waiter.future.completeExceptionally(new IOException("Journal is closed"));
+            }
+        }
+    }
+
+    private void runFlusher() {
+        while (!closed) {
+            try {
+                synchronized (flushRequest) {
+                    if (!flushRequested) {
+                        TimeUnit.NANOSECONDS.timedWait(flushRequest, flushIntervalNanos);
+                    }
+                    flushRequested = false;
+                }
+                long target;
+                synchronized (this) {
+                    target = endLsn;
+                }
+                if (target > durableLsn) {
+                    flush(target);
+                }
+            } catch (IOException e) {
+                flushFailure = e;
+                signalDurableChanged();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    public long durableLsn() {
+        return durableLsn;
+    }
+
+    public synchronized long endLsn() {
+        return endLsn;
+    }
+
+    /**
+     * Deletes segments that end at or before lsn, keeping the one being written.
+     * Records there can no longer be replayed.
+     */
+    public void truncate(long lsn) throws IOException {
+        List<Segment> removed = new ArrayList<>();
+        synchronized (this) {
+            while (segments.size() > 1 && segments.get(0).baseLsn + segmentSize <= lsn) {
+                removed.add(segments.remove(0));
+            }
+        }
+        for (Segment segment : removed) {
+            segment.channel.close();
+            Files.delete(segmentPath(segment.baseLsn));
+        }
+    }
+
+    /**
+     * Visits every intact record starting at or after fromLsn, which must be a
+     * position returned by append, endLsn or 0. Records appended during the call
+     * are not visited.
+     */
+    public void replay(long fromLsn, Visitor visitor) {
+        long end;
+        List<Segment> toRead = new ArrayList<>();
+        synchronized (this) {
+            end = endLsn;
+            for (Segment segment : segments) {
+                if (segment.baseLsn + segmentSize > fromLsn) {
+                    toRead.add(segment);
+                }
+            }
+        }
+        for (Segment segment : toRead) {
+            int offset = (int) Math.max(0, fromLsn - segment.baseLsn);
+            while (segment.baseLsn + offset < end) {
+                int length = recordLength(segment.buffer, offset);
+                if (length < 0) {
+                    break;
+                }
+                int at = offset + HEADER_SIZE;
+                byte type = segment.buffer.get(at);
+                long cents = segment.buffer.getLong(at + 1);
+                int emailLength = segment.buffer.getShort(at + 9);
+                String email = readString(segment.buffer, at + 11, emailLength);
+                int otherLength = segment.buffer.getShort(at + 11 + emailLength);
+                String otherEmail = otherLength == 0 ? null
+                        : readString(segment.buffer, at + 13 + emailLength, otherLength);
+                offset = at + length;
+                visitor.visit(type, email, otherEmail, cents, segment.baseLsn + offset);
+            }
+        }
+    }
+
+    private static String readString(MappedByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Forces everything written and closes the segment files
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        flusher.interrupt();
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush(Long.MAX_VALUE);
+        } finally {
+            // Also fails whenDurable futures the flush could not make durable
+            signalDurableChanged();
+        }
+        synchronized (this) {
+            for (Segment segment : segments) {
+                segment.channel.close();
+            }
+        }
+    }
+
+}
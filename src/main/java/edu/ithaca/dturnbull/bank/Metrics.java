@@ -0,0 +1,110 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts and times BankAccount operations: how often each ran, how often it
+ * was rejected and why, and a LatencyHistogram of how long it took. Counters
+ * are LongAdders, so threads do not contend on them.
+ *
+ * Off unless the system property edu.ithaca.dturnbull.bank.metrics is true,
+ * and can be switched at any time with setEnabled. While off, an operation
+ * pays one volatile read. Postings through Bank count as BankAccount ones;
+ * multi-leg transfers, postings applied by PostingBatch and Accrual changes are
+ * not counted.
+ */
+public final class Metrics {
+
+    public enum Operation {
+        CONSTRUCT, DEPOSIT, WITHDRAW, TRANSFER, EMAIL_VALIDATION, AMOUNT_VALIDATION
+    }
+
+    public enum Reason {
+        INVALID_AMOUNT, INVALID_EMAIL, INSUFFICIENT_FUNDS, OVERFLOW, REFUSED
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final Reason[] REASONS = Reason.values();
+    private static final LongAdder[] COUNTS = new LongAdder[OPERATIONS.length];
+    private static final LongAdder[][] REJECTIONS = new LongAdder[OPERATIONS.length][REASONS.length];
+    private static final LatencyHistogram[] LATENCIES = new LatencyHistogram[OPERATIONS.length];
+
+    private static volatile boolean enabled = Boolean.getBoolean("edu.ithaca.dturnbull.bank.metrics");
+
+    static {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            COUNTS[i] = new LongAdder();
+            LATENCIES[i] = new LatencyHistogram();
+            for (int j = 0; j < REASONS.length; j++) {
+                REJECTIONS[i][j] = new LongAdder();
+            }
+        }
+    }
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    // Start time to pass to end or reject, or 0 if metrics are off. An
+    // operation that started while off is not counted.
+    static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    // Counts a successful operation started at start
+    static void end(Operation operation, long start) {
+        if (start != 0) {
+            long nanos = System.nanoTime() - start;
+            COUNTS[operation.ordinal()].increment();
+            LATENCIES[operation.ordinal()].record(nanos);
+        }
+    }
+
+    // Counts an operation started at start that was rejected for reason
+    static void reject(Operation operation, long start, Reason reason) {
+        if (start != 0) {
+            long nanos = System.nanoTime() - start;
+            COUNTS[operation.ordinal()].increment();
+            REJECTIONS[operation.ordinal()][reason.ordinal()].increment();
+            LATENCIES[operation.ordinal()].record(nanos);
+        }
+    }
+
+    /**
+     * @return how many times operation ran, including rejections
+     */
+    public static long count(Operation operation) {
+        return COUNTS[operation.ordinal()].sum();
+    }
+
+    public static long rejections(Operation operation, Reason reason) {
+        return REJECTIONS[operation.ordinal()][reason.ordinal()].sum();
+    }
+
+    // Live histogram of operation's latencies, including rejections
+    public static LatencyHistogram latency(Operation operation) {
+        return LATENCIES[operation.ordinal()];
+    }
+
+    /**
+     * Sets every count to 0. Operations running during the call may be kept or
+     * dropped.
+     */
+    public static void reset() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            COUNTS[i].reset();
+            LATENCIES[i].reset();
+            for (int j = 0; j < REASONS.length; j++) {
+                REJECTIONS[i][j].reset();
+            }
+        }
+    }
+
+}
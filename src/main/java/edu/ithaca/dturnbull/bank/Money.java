@@ -0,0 +1,92 @@
+package edu.ithaca.dturnbull.bank;
+
+/**
+ * Fixed-point helpers for money amounts with two decimal places. Amounts are
+ * kept as a primitive long number of cents so arithmetic never drifts or boxes.
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+    public static final long CENTS_PER_UNIT = 100;
+
+    public static final long RATE_SCALE = 1_000_000_000;
+
+    // Largest amount whose cents still fit in a long
+    private static final double MAX_AMOUNT = Long.MAX_VALUE / (double) CENTS_PER_UNIT;
+
+    private Money() {
+    }
+
+    /**
+     * Returns true if amount is finite, non-negative and has two decimal places
+     * or less. Does not format or allocate.
+     */
+    public static boolean isValidAmount(double amount) {
+        // Also rejects NaN
+        if (!(amount >= 0) || amount >= MAX_AMOUNT) {
+            return false;
+        }
+        // Division is correctly rounded, so this is exactly the double a two
+        // decimal literal would parse to
+        long cents = Math.round(amount * CENTS_PER_UNIT);
+        return cents / (double) CENTS_PER_UNIT == amount;
+    }
+
+    /**
+     * @return amount in cents
+     * @throws IllegalArgumentException if amount is not valid
+     */
+    public static long toCents(double amount) {
+        if (!isValidAmount(amount)) {
+            throw new IllegalArgumentException("Invalid amount: " + amount);
+        }
+        return Math.round(amount * CENTS_PER_UNIT);
+    }
+
+    // Converts cents back to the nearest double amount
+    public static double toAmount(long cents) {
+        return cents / (double) CENTS_PER_UNIT;
+    }
+
+    /**
+     * @throws ArithmeticException if the result does not fit in a long
+     */
+    public static long add(long cents, long otherCents) {
+        return Math.addExact(cents, otherCents);
+    }
+
+    /**
+     * @throws ArithmeticException if the result does not fit in a long
+     */
+    public static long subtract(long cents, long otherCents) {
+        return Math.subtractExact(cents, otherCents);
+    }
+
+    /**
+     * cents times a rate given in billionths, such as 136_986 for 0.0136986%,
+     * rounded to the nearest cent with ties to the even cent (banker's
+     * rounding) so rounding does not drift up over many accounts
+     *
+     * @throws IllegalArgumentException if cents or ratePerBillion is negative
+     * @throws ArithmeticException      if the result does not fit in a long
+     */
+    public static long applyRate(long cents, long ratePerBillion) {
+        if (cents < 0 || ratePerBillion < 0) {
+            throw new IllegalArgumentException("Invalid rate or amount");
+        }
+        // cents * rate / RATE_SCALE in parts whose products fit in a long
+        long centsHigh = cents / RATE_SCALE;
+        long centsLow = cents % RATE_SCALE;
+        long rateHigh = ratePerBillion / RATE_SCALE;
+        long rateLow = ratePerBillion % RATE_SCALE;
+        long low = centsLow * rateLow;
+        long result = Math.addExact(Math.multiplyExact(cents, rateHigh),
+                Math.addExact(Math.multiplyExact(centsHigh, rateLow), low / RATE_SCALE));
+        long remainder = low % RATE_SCALE;
+        if (remainder * 2 > RATE_SCALE || (remainder * 2 == RATE_SCALE && (result & 1) != 0)) {
+            result = Math.addExact(result, 1);
+        }
+        return result;
+    }
+
+}
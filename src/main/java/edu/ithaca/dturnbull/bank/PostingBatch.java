@@ -0,0 +1,135 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.Arrays;
+
+/**
+ * A columnar buffer of deposits and withdrawals applied in one pass. Each
+ * posting gets a result code instead of an exception. apply groups the
+ * postings by account, keeping each account's postings in the order they were
+ * added, and applies every account's group with a single compare-and-set,
+ * however the batch is ordered.
+ */
+public class PostingBatch {
+
+    // Posting types
+    public static final byte DEPOSIT = 0;
+    public static final byte WITHDRAW = 1;
+
+    // Result codes
+    public static final byte OK = 0;
+    public static final byte INVALID_AMOUNT = 1;
+    public static final byte INSUFFICIENT_FUNDS = 2;
+    public static final byte OVERFLOW = 3;
+    public static final byte INVALID_TYPE = 4;
+
+    private BankAccount[] accounts;
+    private long[] cents;
+    private byte[] types;
+    private int size;
+
+    public PostingBatch(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + initialCapacity);
+        }
+        accounts = new BankAccount[initialCapacity];
+        cents = new long[initialCapacity];
+        types = new byte[initialCapacity];
+    }
+
+    public void addDeposit(BankAccount account, long amountCents) {
+        add(account, amountCents, DEPOSIT);
+    }
+
+    public void addWithdrawal(BankAccount account, long amountCents) {
+        add(account, amountCents, WITHDRAW);
+    }
+
+    private void add(BankAccount account, long amountCents, byte type) {
+        if (account == null) {
+            throw new NullPointerException("account");
+        }
+        if (size == accounts.length) {
+            int capacity = Math.max(16, size * 2);
+            accounts = Arrays.copyOf(accounts, capacity);
+            cents = Arrays.copyOf(cents, capacity);
+            types = Arrays.copyOf(types, capacity);
+        }
+        accounts[size] = account;
+        cents[size] = amountCents;
+        types[size] = type;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(accounts, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * @return a result code for each posting, in the order they were added
+     */
+    public byte[] apply() {
+        byte[] results = new byte[size];
+        apply(accounts, cents, types, size, results);
+        return results;
+    }
+
+    /**
+     * Applies the first count postings (accounts[i], amountCents[i], types[i])
+     * and writes a result code for each into results. If it throws, no
+     * posting was applied.
+     *
+     * @throws IllegalArgumentException if count is negative or an array is
+     *                                  shorter than count
+     * @throws NullPointerException     if one of the accounts is null
+     */
+    public static void apply(BankAccount[] accounts, long[] amountCents, byte[] types, int count, byte[] results) {
+        if (count < 0 || accounts.length < count || amountCents.length < count || types.length < count
+                || results.length < count) {
+            throw new IllegalArgumentException("Batch arrays are shorter than count");
+        }
+        if (count == 0) {
+            return;
+        }
+        // Chains each account's postings through next in one pass over an
+        // identity hash table of accounts, rather than sorting the batch
+        int[] next = new int[count];
+        int[] heads = new int[count];
+        int groups = 0;
+        int tableMask = (Integer.highestOneBit(count) << 2) - 1;
+        BankAccount[] keys = new BankAccount[tableMask + 1];
+        int[] tails = new int[tableMask + 1];
+        int slot = -1;
+        for (int i = 0; i < count; i++) {
+            BankAccount account = accounts[i];
+            if (account == null) {
+                // Still grouping, so nothing was applied yet
+                throw new NullPointerException("account " + i);
+            }
+            next[i] = -1;
+            // A run of one account, as in a batch already grouped, needs no lookup
+            if (slot < 0 || keys[slot] != account) {
+                int h = System.identityHashCode(account);
+                slot = (h ^ (h >>> 16)) & tableMask;
+                while (keys[slot] != null && keys[slot] != account) {
+                    slot = (slot + 1) & tableMask;
+                }
+            }
+            if (keys[slot] == null) {
+                keys[slot] = account;
+                heads[groups++] = i;
+            } else {
+                next[tails[slot]] = i;
+            }
+            tails[slot] = i;
+        }
+        for (int group = 0; group < groups; group++) {
+            accounts[heads[group]].applyRun(amountCents, types, next, heads[group], results);
+        }
+    }
+
+}
@@ -0,0 +1,24 @@
+package edu.ithaca.dturnbull.bank;
+
+/**
+ * Stage a Bank runs before every withdrawal and transfer, such as a
+ * VelocityLimiter. Both methods are called while holding the debited
+ * account's TransferEngine lock, so calls for one account never overlap, and
+ * should be fast: they are on every debit's path.
+ */
+public interface PostingCheck {
+
+    /**
+     * Called before cents are taken from account
+     *
+     * @param nowNanos System.nanoTime() of the posting
+     * @throws PostingRefusedException to refuse the posting
+     */
+    void check(BankAccount account, long cents, long nowNanos);
+
+    /**
+     * Called once cents were taken from account, after check allowed it
+     */
+    void debited(BankAccount account, long cents, long nowNanos);
+
+}
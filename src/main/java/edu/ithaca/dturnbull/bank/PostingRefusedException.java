@@ -0,0 +1,13 @@
+package edu.ithaca.dturnbull.bank;
+
+/**
+ * Thrown when a Bank's PostingCheck refuses a withdrawal or transfer
+ */
+public class PostingRefusedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public PostingRefusedException(String s) {
+        super(s);
+    }
+
+}
@@ -0,0 +1,261 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process request interface to a Bank: postings are addressed by email and
+ * answered with a CompletableFuture, which fails with the exception the Bank
+ * method would have thrown.
+ *
+ * Each account has a mailbox, a queue drained by one task at a time, so
+ * postings to an account are applied one after another in the order they were
+ * submitted and never wait on each other's locks, while different accounts are
+ * drained in parallel. A transfer goes to the mailbox of the account it takes
+ * money from. Mailboxes are striped like TransferEngine locks: accounts that
+ * share a mailbox are also serialized with each other.
+ *
+ * A mailbox applies and journals a posting without waiting for the journal
+ * to reach disk, and moves on to the next one. The posting's future completes
+ * once the journal is as durable as it asked for, on the thread that forced
+ * it, so postings waiting on the same force share it.
+ *
+ * By default mailboxes are drained on virtual threads.
+ */
+public class PostingService implements AutoCloseable {
+
+    private static final int DEFAULT_MAILBOXES = 4096;
+    // Postings a mailbox runs before giving its thread back
+    private static final int DRAIN_LIMIT = 64;
+
+    private final Bank bank;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final Mailbox[] mailboxes;
+    private final int mask;
+    private final AtomicLong pending = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Drains mailboxes on virtual threads
+     */
+    public PostingService(Bank bank) {
+        this(bank, Executors.newVirtualThreadPerTaskExecutor(), DEFAULT_MAILBOXES, true);
+    }
+
+    /**
+     * @param executor     where mailboxes are drained; close does not shut it
+     *                     down
+     * @param mailboxCount number of mailboxes, rounded up to a power of two
+     * @throws IllegalArgumentException if mailboxCount is not positive
+     */
+    public PostingService(Bank bank, ExecutorService executor, int mailboxCount) {
+        this(bank, executor, mailboxCount, false);
+    }
+
+    private PostingService(Bank bank, ExecutorService executor, int mailboxCount, boolean ownsExecutor) {
+        if (mailboxCount <= 0 || mailboxCount > (1 << 20)) {
+            throw new IllegalArgumentException("Invalid mailbox count: " + mailboxCount);
+        }
+        int size = Integer.highestOneBit(mailboxCount);
+        if (size < mailboxCount) {
+            size <<= 1;
+        }
+        this.bank = bank;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        mailboxes = new Mailbox[size];
+        for (int i = 0; i < size; i++) {
+            mailboxes[i] = new Mailbox();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Same as Bank.deposit, run in email's mailbox
+     */
+    public CompletableFuture<Void> deposit(String email, long cents, Durability durability) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        BankAccount account = lookUp(email, result);
+        if (account != null) {
+            submit(account, result, durability, () -> bank.deposit(account, cents, Durability.NONE));
+        }
+        return result;
+    }
+
+    /**
+     * Same as Bank.withdraw, run in email's mailbox
+     */
+    public CompletableFuture<Void> withdraw(String email, long cents, Durability durability) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        BankAccount account = lookUp(email, result);
+        if (account != null) {
+            submit(account, result, durability, () -> bank.withdraw(account, cents, Durability.NONE));
+        }
+        return result;
+    }
+
+    /**
+     * Same as Bank.transfer, run in fromEmail's mailbox
+     */
+    public CompletableFuture<Void> transfer(String fromEmail, String toEmail, long cents, Durability durability) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        BankAccount from = lookUp(fromEmail, result);
+        BankAccount to = from == null ? null : lookUp(toEmail, result);
+        if (to != null) {
+            submit(from, result, durability, () -> bank.transfer(from, to, cents, Durability.NONE));
+        }
+        return result;
+    }
+
+    // The account with email, or null after failing result
+    private BankAccount lookUp(String email, CompletableFuture<Void> result) {
+        BankAccount account = bank.find(email);
+        if (account == null) {
+            result.completeExceptionally(new IllegalArgumentException("No account with email " + email));
+        }
+        return account;
+    }
+
+    private interface Posting {
+        void run() throws InsufficientFundsException;
+    }
+
+    private void submit(BankAccount account, CompletableFuture<Void> result, Durability durability,
+            Posting posting) {
+        pending.incrementAndGet();
+        // Checked after counting, so close either sees this posting or it is refused here
+        if (closed) {
+            finished();
+            result.completeExceptionally(new RejectedExecutionException("Posting service is closed"));
+            return;
+        }
+        int h = System.identityHashCode(account);
+        mailboxes[(h ^ (h >>> 16)) & mask].post(new Task(posting, durability, result));
+    }
+
+    private void finished() {
+        if (pending.decrementAndGet() == 0 && closed) {
+            synchronized (pending) {
+                pending.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Refuses new postings, waits for the submitted ones to finish, and shuts
+     * down the executor if this service created it. If interrupted, stops
+     * waiting and returns with the interrupt flag set.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            synchronized (pending) {
+                while (pending.get() != 0) {
+                    pending.wait(100);
+                }
+            }
+            if (ownsExecutor) {
+                executor.shutdown();
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            }
+        } catch (InterruptedException e) {
+            if (ownsExecutor) {
+                executor.shutdown();
+            }
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // A submitted posting, the durability it asked for and its answer
+    private final class Task {
+        private final Posting posting;
+        private final Durability durability;
+        private final CompletableFuture<Void> result;
+
+        Task(Posting posting, Durability durability, CompletableFuture<Void> result) {
+            this.posting = posting;
+            this.durability = durability;
+            this.result = result;
+        }
+
+        void run() {
+            try {
+                posting.run();
+            } catch (Exception e) {
+                fail(e);
+                return;
+            } catch (Error e) {
+                fail(e);
+                throw e;
+            }
+            // Answered when the journal is durable, the mailbox does not wait
+            bank.whenJournaled(durability).whenComplete((ignored, e) -> {
+                if (e == null) {
+                    result.complete(null);
+                } else {
+                    result.completeExceptionally(e);
+                }
+                finished();
+            });
+        }
+
+        void fail(Throwable e) {
+            result.completeExceptionally(e);
+            finished();
+        }
+    }
+
+    // Queue of postings run by at most one thread at a time
+    private final class Mailbox implements Runnable {
+        private final ConcurrentLinkedQueue<Task> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        void post(Task task) {
+            queue.add(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // The executor was shut down under us: nothing here can run any more
+                    for (Task task; (task = queue.poll()) != null;) {
+                        task.fail(e);
+                    }
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < DRAIN_LIMIT; i++) {
+                    Task task = queue.poll();
+                    if (task == null) {
+                        break;
+                    }
+                    task.run();
+                }
+            } finally {
+                // Even after an Error, or the mailbox would never run again
+                scheduled.set(false);
+                // A posting added after the last poll found the mailbox still scheduled
+                if (!queue.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+    }
+
+}
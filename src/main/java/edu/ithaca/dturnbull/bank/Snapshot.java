@@ -0,0 +1,198 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary file of every account's email and balance as of one journal position
+ * (the cut). Layout: [int magic][long cut][long account hint], then
+ * [short email length][email][long cents] per account, then
+ * [short -1][long count][int CRC32 of everything before it]. Files are named
+ * by their cut so the latest one sorts last.
+ */
+final class Snapshot {
+
+    private static final int MAGIC = 0x534E4150;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+
+    private Snapshot() {
+    }
+
+    /**
+     * Writes a snapshot file for cutLsn. Nothing is visible under the final name
+     * until the file is complete and forced to disk, and commit returns only
+     * once the rename is on disk too.
+     */
+    static class Writer implements Closeable {
+        private final Path directory;
+        private final Path file;
+        private final Path temporary;
+        private final CRC32 crc = new CRC32();
+        private final DataOutputStream out;
+        private long count;
+
+        Writer(Path directory, long cutLsn, long accountHint) throws IOException {
+            Files.createDirectories(directory);
+            this.directory = directory;
+            file = directory.resolve(String.format(PREFIX + "%020d" + SUFFIX, cutLsn));
+            temporary = directory.resolve(file.getFileName() + ".tmp");
+            out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16), crc));
+            out.writeInt(MAGIC);
+            out.writeLong(cutLsn);
+            out.writeLong(accountHint);
+        }
+
+        void add(String email, long cents) throws IOException {
+            byte[] bytes = email.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Email too long to snapshot");
+            }
+            out.writeShort(bytes.length);
+            out.write(bytes);
+            out.writeLong(cents);
+            count++;
+        }
+
+        // Finishes the file and moves it to its final name
+        void commit() throws IOException {
+            out.writeShort(-1);
+            out.writeLong(count);
+            out.writeInt((int) crc.getValue());
+            out.close();
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+            // Until the rename is on disk a crash can bring back the older
+            // snapshots, so they stay until then, as does the journal they need
+            Journal.syncDirectory(directory);
+            // Older snapshots are no longer needed
+            for (Path older : list(directory)) {
+                if (older.compareTo(file) < 0) {
+                    Files.delete(older);
+                }
+            }
+        }
+
+        // Drops the file if it was not committed
+        @Override
+        public void close() throws IOException {
+            out.close();
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Streams the accounts of a snapshot file
+     */
+    static class Reader implements Closeable {
+        private final CRC32 crc = new CRC32();
+        private final DataInputStream in;
+        private final long cutLsn;
+        private final long accountHint;
+        private long count;
+        private String email;
+        private long cents;
+
+        Reader(Path file) throws IOException {
+            in = new DataInputStream(new CheckedInputStream(
+                    new BufferedInputStream(Files.newInputStream(file), 1 << 16), crc));
+            if (in.readInt() != MAGIC) {
+                in.close();
+                throw new IOException("Not a snapshot file: " + file);
+            }
+            cutLsn = in.readLong();
+            accountHint = in.readLong();
+        }
+
+        long cutLsn() {
+            return cutLsn;
+        }
+
+        // Number of accounts the writer expected, for sizing
+        long accountHint() {
+            return accountHint;
+        }
+
+        /**
+         * Moves to the next account
+         *
+         * @return false at the end of the file
+         * @throws IOException if the file is truncated or its checksum is wrong
+         */
+        boolean next() throws IOException {
+            int length = in.readShort();
+            if (length < 0) {
+                long expectedCount = in.readLong();
+                int expectedCrc = (int) crc.getValue();
+                if (in.readInt() != expectedCrc || expectedCount != count) {
+                    throw new IOException("Snapshot is corrupt");
+                }
+                return false;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            email = new String(bytes, StandardCharsets.UTF_8);
+            cents = in.readLong();
+            count++;
+            return true;
+        }
+
+        String email() {
+            return email;
+        }
+
+        long cents() {
+            return cents;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * @return the snapshot with the highest cut in directory, or null if there is
+     *         none
+     */
+    static Path latest(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+        List<Path> files = list(directory);
+        return files.isEmpty() ? null : files.get(files.size() - 1);
+    }
+
+    // Committed snapshot files in directory, oldest first
+    private static List<Path> list(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(directory)) {
+            paths.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).forEach(files::add);
+        }
+        files.sort(null);
+        return files;
+    }
+
+}
@@ -0,0 +1,222 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * The most recent postings of every account in a Bank, kept in fixed-size ring
+ * buffers inside large long[] pages rather than as objects, so millions of
+ * accounts add no objects for the garbage collector to trace. Each account
+ * takes one slot of 1 + 3 * depth longs: a sequence number, then per entry the
+ * cents, the timestamp, and the type with the counterparty's slot.
+ *
+ * Postings are recorded by one thread at a time per account (Bank holds the
+ * account's TransferEngine lock). Reads take no lock: read copies the ring and
+ * then checks the sequence number again, dropping any entry that was being
+ * overwritten while it was copied.
+ *
+ * History is kept in memory only; it is not journaled or checkpointed.
+ */
+public final class TransactionHistory {
+
+    public static final byte DEPOSIT = 1;
+    public static final byte WITHDRAWAL = 2;
+    public static final byte TRANSFER_OUT = 3;
+    public static final byte TRANSFER_IN = 4;
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    // Longs per page, so a page is at most 8 MB
+    private static final int PAGE_LONGS = 1 << 20;
+
+    private final int depth;
+    private final int stride;
+    private final int pageShift;
+    private final int pageMask;
+    // Pages are only added, under this; the arrays are replaced rather than changed
+    private volatile long[][] pages = new long[0][];
+    private volatile BankAccount[][] accounts = new BankAccount[0][];
+    // Written last by allocate, so a slot below it has its page
+    private volatile int nextSlot;
+
+    /**
+     * @param depth how many recent postings to keep per account
+     * @throws IllegalArgumentException if depth is not between 1 and 4096
+     */
+    public TransactionHistory(int depth) {
+        if (depth < 1 || depth > 4096) {
+            throw new IllegalArgumentException("Invalid history depth");
+        }
+        this.depth = depth;
+        stride = 1 + 3 * depth;
+        int pageSlots = Integer.highestOneBit(PAGE_LONGS / stride);
+        pageShift = Integer.numberOfTrailingZeros(pageSlots);
+        pageMask = pageSlots - 1;
+    }
+
+    public int depth() {
+        return depth;
+    }
+
+    // Makes sure the next slot has its page, so an allocate soon after does not
+    // have to create one. Lets callers create pages before taking their locks.
+    synchronized void reserve() {
+        if (nextSlot >>> pageShift == pages.length) {
+            grow();
+        }
+    }
+
+    // Gives account the next slot. Called once per account, before it is used.
+    synchronized void allocate(BankAccount account) {
+        int slot = nextSlot;
+        int page = slot >>> pageShift;
+        if (page == pages.length) {
+            grow();
+        }
+        accounts[page][slot & pageMask] = account;
+        account.historySlot = slot;
+        nextSlot = slot + 1;
+    }
+
+    // Adds a page. Caller holds this.
+    private void grow() {
+        int page = pages.length;
+        long[][] grownPages = Arrays.copyOf(pages, page + 1);
+        grownPages[page] = new long[(pageMask + 1) * stride];
+        BankAccount[][] grownAccounts = Arrays.copyOf(accounts, page + 1);
+        grownAccounts[page] = new BankAccount[pageMask + 1];
+        pages = grownPages;
+        accounts = grownAccounts;
+    }
+
+    /**
+     * Adds a posting to account's history. Only one thread may record for an
+     * account at a time.
+     *
+     * @param counterparty the other account of a transfer, or null
+     */
+    void record(BankAccount account, byte type, long cents, BankAccount counterparty, long timestampMillis) {
+        int slot = account.historySlot;
+        long[] page = pages[slot >>> pageShift];
+        int base = (slot & pageMask) * stride;
+        long sequence = (long) LONGS.getOpaque(page, base);
+        // Odd while the entry is being written
+        LONGS.setOpaque(page, base, sequence + 1);
+        VarHandle.storeStoreFence();
+        long count = sequence >>> 1;
+        int entry = base + 1 + (int) (count % depth) * 3;
+        long other = counterparty == null ? 0 : counterparty.historySlot + 1L;
+        page[entry] = cents;
+        page[entry + 1] = timestampMillis;
+        page[entry + 2] = (long) type << 32 | other;
+        LONGS.setRelease(page, base, sequence + 2);
+    }
+
+    /**
+     * @return a holder for read, big enough for a full history
+     */
+    public Entries newEntries() {
+        return new Entries(depth);
+    }
+
+    /**
+     * Copies account's recent postings into entries, oldest first, without
+     * locking. The copy is consistent: every entry returned was complete and
+     * they are the newest ones up to some moment during the call.
+     *
+     * @return the number of entries copied
+     * @throws IllegalArgumentException if account has no history here, or entries
+     *                                  came from a shallower history
+     */
+    public int read(BankAccount account, Entries entries) {
+        if (entries.cents.length < depth) {
+            throw new IllegalArgumentException("Entries too small for this history");
+        }
+        int slot = account.historySlot;
+        if (slot < 0 || slot >= nextSlot || accounts[slot >>> pageShift][slot & pageMask] != account) {
+            throw new IllegalArgumentException("Account " + account.getEmail() + " has no history here");
+        }
+        long[] page = pages[slot >>> pageShift];
+        int base = (slot & pageMask) * stride;
+        long completed = (long) LONGS.getAcquire(page, base) >>> 1;
+        long first = Math.max(0, completed - depth);
+        int size = 0;
+        for (long i = first; i < completed; i++, size++) {
+            int entry = base + 1 + (int) (i % depth) * 3;
+            entries.cents[size] = page[entry];
+            entries.timestamps[size] = page[entry + 1];
+            entries.meta[size] = page[entry + 2];
+        }
+        VarHandle.loadLoadFence();
+        // Entries older than this may have been overwritten during the copy
+        long started = ((long) LONGS.getOpaque(page, base) + 1) >>> 1;
+        long overwritten = started - depth - first;
+        if (overwritten >= size) {
+            size = 0;
+        } else if (overwritten > 0) {
+            int skip = (int) overwritten;
+            size -= skip;
+            System.arraycopy(entries.cents, skip, entries.cents, 0, size);
+            System.arraycopy(entries.timestamps, skip, entries.timestamps, 0, size);
+            System.arraycopy(entries.meta, skip, entries.meta, 0, size);
+        }
+        entries.size = size;
+        entries.history = this;
+        return size;
+    }
+
+    private BankAccount accountAt(int slot) {
+        return accounts[slot >>> pageShift][slot & pageMask];
+    }
+
+    /**
+     * Reusable columnar holder for the result of read. Not thread-safe.
+     */
+    public static final class Entries {
+        private final long[] cents;
+        private final long[] timestamps;
+        private final long[] meta;
+        private int size;
+        private TransactionHistory history;
+
+        private Entries(int capacity) {
+            cents = new long[capacity];
+            timestamps = new long[capacity];
+            meta = new long[capacity];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        // One of DEPOSIT, WITHDRAWAL, TRANSFER_OUT or TRANSFER_IN
+        public byte type(int i) {
+            check(i);
+            return (byte) (meta[i] >>> 32);
+        }
+
+        public long cents(int i) {
+            check(i);
+            return cents[i];
+        }
+
+        public long timestampMillis(int i) {
+            check(i);
+            return timestamps[i];
+        }
+
+        // The other account of a transfer, or null
+        public BankAccount counterparty(int i) {
+            check(i);
+            int other = (int) meta[i];
+            return other == 0 ? null : history.accountAt(other - 1);
+        }
+
+        private void check(int i) {
+            if (i < 0 || i >= size) {
+                throw new IndexOutOfBoundsException(i);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,240 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Moves money between accounts as one atomic step. Each account maps to one of
+ * a fixed set of striped locks, and locks are always taken in ascending stripe
+ * order, so opposing transfers can never deadlock while transfers between
+ * unrelated accounts usually take different locks.
+ */
+public class TransferEngine {
+
+    static final TransferEngine DEFAULT = new TransferEngine(1024);
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    /**
+     * @param stripeCount number of locks, rounded up to a power of two
+     * @throws IllegalArgumentException if stripeCount is not positive
+     */
+    public TransferEngine(int stripeCount) {
+        if (stripeCount <= 0 || stripeCount > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid stripe count: " + stripeCount);
+        }
+        int size = Integer.highestOneBit(stripeCount);
+        if (size < stripeCount) {
+            size <<= 1;
+        }
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    private int stripeOf(BankAccount account) {
+        int h = System.identityHashCode(account);
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * @post moves cents from one account to the other, or changes nothing
+     * @throws IllegalArgumentException   if cents is negative or 0
+     * @throws InsufficientFundsException if cents is greater than from's balance
+     * @throws ArithmeticException        if to's balance would overflow
+     */
+    public void transfer(BankAccount from, BankAccount to, long cents) throws InsufficientFundsException {
+        transfer(from, to, cents, Metrics.start());
+    }
+
+    // transfer counted in Metrics as started at start, or not at all if start is 0
+    void transfer(BankAccount from, BankAccount to, long cents, long start) throws InsufficientFundsException {
+        lock(from, to);
+        try {
+            transferLocked(from, to, cents, start);
+        } finally {
+            unlock(from, to);
+        }
+    }
+
+    // The body of transfer, for callers already holding lock(from, to). The
+    // legs are not counted as a withdrawal and a deposit.
+    static void transferLocked(BankAccount from, BankAccount to, long cents, long start)
+            throws InsufficientFundsException {
+        try {
+            from.withdrawCents(cents, 0);
+            try {
+                to.depositCents(cents, 0);
+            } catch (ArithmeticException e) {
+                from.adjustCents(cents);
+                throw e;
+            }
+        } catch (InsufficientFundsException e) {
+            Metrics.reject(Metrics.Operation.TRANSFER, start, Metrics.Reason.INSUFFICIENT_FUNDS);
+            throw e;
+        } catch (IllegalArgumentException e) {
+            Metrics.reject(Metrics.Operation.TRANSFER, start, Metrics.Reason.INVALID_AMOUNT);
+            throw e;
+        } catch (ArithmeticException e) {
+            Metrics.reject(Metrics.Operation.TRANSFER, start, Metrics.Reason.OVERFLOW);
+            throw e;
+        }
+        Metrics.end(Metrics.Operation.TRANSFER, start);
+    }
+
+    // Takes the stripes of both accounts, which may be the same account
+    void lock(BankAccount first, BankAccount second) {
+        int low = Math.min(stripeOf(first), stripeOf(second));
+        int high = Math.max(stripeOf(first), stripeOf(second));
+        stripes[low].lock();
+        if (high != low) {
+            stripes[high].lock();
+        }
+    }
+
+    void unlock(BankAccount first, BankAccount second) {
+        int low = Math.min(stripeOf(first), stripeOf(second));
+        int high = Math.max(stripeOf(first), stripeOf(second));
+        if (high != low) {
+            stripes[high].unlock();
+        }
+        stripes[low].unlock();
+    }
+
+    // Takes every stripe, which blocks all transfers through this engine
+    void lockEverything() {
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+        }
+    }
+
+    void unlockEverything() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+    }
+
+    /**
+     * Applies every leg from[i] -> to[i] of cents[i] together. Legs are netted
+     * per account first, so an account may pass on money it receives in the
+     * same call.
+     *
+     * @post applies all legs, or changes nothing
+     * @throws IllegalArgumentException   if the arrays differ in length or a leg
+     *                                    amount is negative or 0
+     * @throws InsufficientFundsException if an account would end up below zero
+     * @throws ArithmeticException        if a balance would overflow
+     */
+    public void transfer(BankAccount[] from, BankAccount[] to, long[] cents) throws InsufficientFundsException {
+        if (from.length != to.length || from.length != cents.length) {
+            throw new IllegalArgumentException("Transfer legs must have the same length");
+        }
+        Map<BankAccount, long[]> net = new IdentityHashMap<>();
+        for (int i = 0; i < cents.length; i++) {
+            if (cents[i] <= 0) {
+                throw new IllegalArgumentException("Invalid transfer amount");
+            }
+            long[] fromNet = net.computeIfAbsent(from[i], account -> new long[1]);
+            fromNet[0] = Money.subtract(fromNet[0], cents[i]);
+            long[] toNet = net.computeIfAbsent(to[i], account -> new long[1]);
+            toNet[0] = Money.add(toNet[0], cents[i]);
+        }
+
+        BankAccount[] accounts = net.keySet().toArray(new BankAccount[0]);
+        long[] changes = new long[accounts.length];
+        for (int i = 0; i < accounts.length; i++) {
+            changes[i] = net.get(accounts[i])[0];
+        }
+        int[] locked = lockAll(accounts);
+        try {
+            apply(accounts, changes);
+        } finally {
+            unlockAll(locked);
+        }
+    }
+
+    /**
+     * Reads the balances of several accounts at one instant with respect to
+     * transfers made through this engine.
+     *
+     * @return balances in cents, in the order of accounts
+     */
+    public long[] balancesCents(BankAccount... accounts) {
+        int[] locked = lockAll(accounts);
+        try {
+            long[] balances = new long[accounts.length];
+            for (int i = 0; i < accounts.length; i++) {
+                balances[i] = accounts[i].getBalanceCents();
+            }
+            return balances;
+        } finally {
+            unlockAll(locked);
+        }
+    }
+
+    // Locks the stripes of accounts in ascending order and returns them
+    private int[] lockAll(BankAccount[] accounts) {
+        int[] locked = new int[accounts.length];
+        for (int i = 0; i < accounts.length; i++) {
+            locked[i] = stripeOf(accounts[i]);
+        }
+        Arrays.sort(locked);
+        int count = 0;
+        for (int i = 0; i < locked.length; i++) {
+            if (i == 0 || locked[i] != locked[i - 1]) {
+                locked[count++] = locked[i];
+            }
+        }
+        locked = Arrays.copyOf(locked, count);
+        for (int stripe : locked) {
+            stripes[stripe].lock();
+        }
+        return locked;
+    }
+
+    private void unlockAll(int[] locked) {
+        for (int i = locked.length - 1; i >= 0; i--) {
+            stripes[locked[i]].unlock();
+        }
+    }
+
+    // Debits first so a shortfall is found before anyone is credited
+    private static void apply(BankAccount[] accounts, long[] changes) throws InsufficientFundsException {
+        int debited = 0;
+        try {
+            for (; debited < accounts.length; debited++) {
+                if (changes[debited] < 0) {
+                    accounts[debited].withdrawCents(-changes[debited], 0);
+                }
+            }
+        } catch (InsufficientFundsException e) {
+            for (int i = 0; i < debited; i++) {
+                if (changes[i] < 0) {
+                    accounts[i].adjustCents(-changes[i]);
+                }
+            }
+            throw e;
+        }
+        int credited = 0;
+        try {
+            for (; credited < accounts.length; credited++) {
+                if (changes[credited] > 0) {
+                    accounts[credited].depositCents(changes[credited], 0);
+                }
+            }
+        } catch (ArithmeticException e) {
+            for (int i = 0; i < accounts.length; i++) {
+                if (changes[i] < 0 || i < credited && changes[i] > 0) {
+                    accounts[i].adjustCents(-changes[i]);
+                }
+            }
+            throw e;
+        }
+    }
+
+}
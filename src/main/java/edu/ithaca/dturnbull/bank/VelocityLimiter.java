@@ -0,0 +1,199 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.Arrays;
+
+/**
+ * PostingCheck that limits how much and how often each account may be debited
+ * within a sliding window, such as "at most 1000.00 in at most 20 withdrawals
+ * and transfers in the last minute".
+ *
+ * The window is split into bucketCount time buckets. Each account keeps its
+ * debit count and total per bucket, plus running totals for the whole window,
+ * in large long[] pages like TransactionHistory, so tracking millions of
+ * accounts creates no object per account. The window slides one bucket at a
+ * time: a debit counts until its bucket is bucketCount buckets old. Expired
+ * buckets are taken off the running totals when the account is next checked,
+ * so a check reads the totals instead of summing every bucket.
+ *
+ * An account remembers the limiter that last used it and its slot there, so
+ * a check normally finds the slot without a lookup. Each limiter also keeps
+ * an identity table from account to slot, in plain arrays, which it searches
+ * only when another limiter used the account since. Limiters can therefore be
+ * swapped or used side by side, though side by side every call takes that
+ * slower path. A slot lasts as long as the limiter. Relies on the
+ * PostingCheck guarantee that calls for one account never overlap.
+ */
+public final class VelocityLimiter implements PostingCheck {
+
+    // Longs per page, so a page is at most 8 MB
+    private static final int PAGE_LONGS = 1 << 20;
+    private static final int HEADER = 3;
+    // Newest bucket of an account that was never debited
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private final long bucketNanos;
+    private final int bucketCount;
+    private final long maxCents;
+    private final long maxDebits;
+    // Per account: the newest bucket number seen, debits and cents in the
+    // window, then bucketCount times [debits, cents]
+    private final int stride;
+    private final int pageShift;
+    private final int pageMask;
+    // Pages are only added, under this; the array is replaced rather than changed
+    private volatile long[][] pages = new long[0][];
+    private int nextSlot;
+    // Open-addressed identity table of every account given a slot, at most
+    // half full. Guarded by this.
+    private BankAccount[] tableAccounts = new BankAccount[16];
+    private int[] tableSlots = new int[16];
+
+    /**
+     * @param windowMillis length of the sliding window
+     * @param bucketCount  buckets the window is split into; more buckets slide
+     *                     more smoothly but make each check longer
+     * @param maxCents     most an account may be debited within the window
+     * @param maxDebits    most withdrawals and transfers from an account within
+     *                     the window
+     * @throws IllegalArgumentException if a parameter is not positive or
+     *                                  bucketCount is above 1024
+     */
+    public VelocityLimiter(long windowMillis, int bucketCount, long maxCents, long maxDebits) {
+        if (windowMillis <= 0 || bucketCount <= 0 || bucketCount > 1024 || maxCents <= 0 || maxDebits <= 0
+                || windowMillis * 1_000_000 / bucketCount == 0) {
+            throw new IllegalArgumentException("Invalid velocity limit");
+        }
+        bucketNanos = windowMillis * 1_000_000 / bucketCount;
+        this.bucketCount = bucketCount;
+        this.maxCents = maxCents;
+        this.maxDebits = maxDebits;
+        stride = HEADER + 2 * bucketCount;
+        int pageSlots = Integer.highestOneBit(Math.max(1, PAGE_LONGS / stride));
+        pageShift = Integer.numberOfTrailingZeros(pageSlots);
+        pageMask = pageSlots - 1;
+    }
+
+    /**
+     * @throws PostingRefusedException if the debit would take account over
+     *                                  either limit
+     */
+    @Override
+    public void check(BankAccount account, long cents, long nowNanos) {
+        int slot = slot(account);
+        long[] page = pages[slot >>> pageShift];
+        int base = advance(page, slot, nowNanos);
+        if (page[base + 1] >= maxDebits) {
+            throw new PostingRefusedException("Too many withdrawals and transfers from " + account.getEmail());
+        }
+        if (cents > maxCents - page[base + 2]) {
+            throw new PostingRefusedException("Withdrawal limit reached for " + account.getEmail());
+        }
+    }
+
+    @Override
+    public void debited(BankAccount account, long cents, long nowNanos) {
+        int slot = slot(account);
+        long[] page = pages[slot >>> pageShift];
+        int base = advance(page, slot, nowNanos);
+        int bucket = base + HEADER + 2 * (int) Math.floorMod(page[base], (long) bucketCount);
+        page[bucket]++;
+        page[bucket + 1] += cents;
+        page[base + 1]++;
+        page[base + 2] += cents;
+    }
+
+    private int slot(BankAccount account) {
+        return account.velocityLimiter == this ? account.velocitySlot : lookUp(account);
+    }
+
+    // Slides account's window forward to nowNanos, clearing the buckets that
+    // left it, and returns where the account's longs start. Time going back
+    // counts as the newest bucket seen.
+    private int advance(long[] page, int slot, long nowNanos) {
+        int base = (slot & pageMask) * stride;
+        long bucket = Math.floorDiv(nowNanos, bucketNanos);
+        long newest = page[base];
+        if (bucket <= newest) {
+            return base;
+        }
+        if (newest == NEVER || bucket - newest >= bucketCount) {
+            // Everything expired
+            if (page[base + 1] != 0) {
+                Arrays.fill(page, base + 1, base + stride, 0);
+            }
+        } else {
+            for (long b = newest + 1; b <= bucket; b++) {
+                int i = base + HEADER + 2 * (int) Math.floorMod(b, (long) bucketCount);
+                page[base + 1] -= page[i];
+                page[base + 2] -= page[i + 1];
+                page[i] = 0;
+                page[i + 1] = 0;
+            }
+        }
+        page[base] = bucket;
+        return base;
+    }
+
+    // Finds account's slot in the table, giving it the next one, never debited,
+    // if it has none, and remembers it on the account
+    private synchronized int lookUp(BankAccount account) {
+        int mask = tableAccounts.length - 1;
+        int h = System.identityHashCode(account);
+        int i = (h ^ (h >>> 16)) & mask;
+        while (tableAccounts[i] != null && tableAccounts[i] != account) {
+            i = (i + 1) & mask;
+        }
+        int slot;
+        if (tableAccounts[i] != null) {
+            slot = tableSlots[i];
+        } else {
+            slot = allocate();
+            tableAccounts[i] = account;
+            tableSlots[i] = slot;
+            if (2 * nextSlot > tableAccounts.length) {
+                growTable();
+            }
+        }
+        account.velocityLimiter = this;
+        account.velocitySlot = slot;
+        return slot;
+    }
+
+    // The next slot, with its page. Caller holds this.
+    private int allocate() {
+        int slot = nextSlot;
+        int page = slot >>> pageShift;
+        if (page == pages.length) {
+            long[][] grown = Arrays.copyOf(pages, page + 1);
+            long[] fresh = new long[(pageMask + 1) * stride];
+            for (int i = 0; i < fresh.length; i += stride) {
+                fresh[i] = NEVER;
+            }
+            grown[page] = fresh;
+            pages = grown;
+        }
+        nextSlot = slot + 1;
+        return slot;
+    }
+
+    // Doubles the table. Caller holds this.
+    private void growTable() {
+        BankAccount[] accounts = tableAccounts;
+        int[] slots = tableSlots;
+        tableAccounts = new BankAccount[accounts.length * 2];
+        tableSlots = new int[accounts.length * 2];
+        int mask = tableAccounts.length - 1;
+        for (int j = 0; j < accounts.length; j++) {
+            if (accounts[j] != null) {
+                int h = System.identityHashCode(accounts[j]);
+                int i = (h ^ (h >>> 16)) & mask;
+                while (tableAccounts[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                tableAccounts[i] = accounts[j];
+                tableSlots[i] = slots[j];
+            }
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountImporterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void importTest() throws IOException {
+        Path csv = directory.resolve("accounts.csv");
+        Files.write(csv, ("a@b.com,200\n"
+                + "b@c.com,19.99\r\n" // windows line end
+                + "\n" // blank, skipped
+                + "c@d.com,-5\n"
+                + "d@e,5\n"
+                + "no comma\n"
+                + "a@b.com,1\n" // duplicate
+                + "é@ü.de,0.5\n"
+                + "e@f.com,0.001\n"
+                + "f@g.com,7.500\n" // trailing zeros are fine
+                + "g@h.com,") // last line without newline or amount
+                .getBytes(StandardCharsets.UTF_8));
+        Path rejects = directory.resolve("rejects.csv");
+        Bank bank = new Bank();
+        AccountImporter.Summary summary = new AccountImporter(bank).importFile(csv, rejects);
+
+        assertEquals(10, summary.rows());
+        assertEquals(4, summary.imported());
+        assertEquals(6, summary.rejected());
+        assertEquals(4, bank.size());
+        assertEquals(20_000, bank.find("a@b.com").getBalanceCents());
+        assertEquals(1_999, bank.find("b@c.com").getBalanceCents());
+        assertEquals(50, bank.find("é@ü.de").getBalanceCents());
+        assertEquals(750, bank.find("f@g.com").getBalanceCents());
+
+        assertEquals(List.of("28,invalid-amount,c@d.com,-5", "39,invalid-email,d@e,5", "45,malformed,no comma",
+                "54,duplicate,a@b.com,1", "77,invalid-amount,e@f.com,0.001", "105,invalid-amount,g@h.com,"),
+                Files.readAllLines(rejects, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void headerTest() throws IOException {
+        Path csv = directory.resolve("accounts.csv");
+        Files.writeString(csv, "email,balance\na@b.com,1\n");
+        Path rejects = directory.resolve("rejects.csv");
+        AccountImporter.Summary summary = new AccountImporter(new Bank()).importFile(csv, rejects);
+        assertEquals(1, summary.rejected()); // a header is not recognized on its own
+        assertEquals(List.of("0,invalid-amount,email,balance"), Files.readAllLines(rejects));
+
+        Bank bank = new Bank();
+        summary = new AccountImporter(bank).importFile(csv, rejects, true);
+        assertEquals(1, summary.rows());
+        assertEquals(1, summary.imported());
+        assertEquals(0, Files.size(rejects));
+        assertEquals(100, bank.find("a@b.com").getBalanceCents());
+
+        // header split across small windows, and a file that is only a header
+        summary = new AccountImporter(new Bank(), ForkJoinPool.commonPool(), 16, 4).importFile(csv, rejects, true);
+        assertEquals(1, summary.imported());
+        Files.writeString(csv, "email,balance"); // boundary: header without a line end
+        assertEquals(0, new AccountImporter(new Bank()).importFile(csv, rejects, true).rows());
+    }
+
+    @Test
+    void emptyTest() throws IOException {
+        Path csv = Files.createFile(directory.resolve("empty.csv")); // boundary: no lines
+        Path rejects = directory.resolve("rejects.csv");
+        Files.writeString(rejects, "left over");
+        AccountImporter.Summary summary = new AccountImporter(new Bank()).importFile(csv, rejects);
+        assertEquals(0, summary.rows());
+        assertEquals(0, Files.size(rejects)); // replaced
+    }
+
+    @Test
+    void parallelTest() throws IOException {
+        // Tiny windows and ranges so lines straddle every kind of boundary
+        Random random = new Random(13);
+        StringBuilder csv = new StringBuilder();
+        int expectedImported = 0;
+        long expectedCents = 0;
+        for (int i = 0; i < 20_000; i++) {
+            String email = random.nextInt(50) == 0 ? "bad" + i : "user" + i + "@bank.com";
+            String amount = random.nextInt(3) + "." + random.nextInt(1_000);
+            csv.append(email).append(',').append(amount).append('\n');
+            if (BankAccount.isEmailValid(email) && BankAccount.isAmountValid(Double.parseDouble(amount))) {
+                expectedImported++;
+                expectedCents += Money.toCents(Double.parseDouble(amount));
+            }
+        }
+        Path file = directory.resolve("accounts.csv");
+        Files.writeString(file, csv);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Bank bank = new Bank();
+            AccountImporter.Summary summary = new AccountImporter(bank, pool, 4096, 512)
+                    .importFile(file, directory.resolve("rejects.csv"));
+            assertEquals(20_000, summary.rows());
+            assertEquals(expectedImported, summary.imported());
+            assertEquals(expectedImported, bank.size());
+            long cents = 0;
+            for (int i = 0; i < 20_000; i++) {
+                BankAccount account = bank.find("user" + i + "@bank.com");
+                cents += account == null ? 0 : account.getBalanceCents();
+            }
+            assertEquals(expectedCents, cents);
+
+            // rejects keep input order
+            List<String> rejects = Files.readAllLines(directory.resolve("rejects.csv"));
+            assertEquals(20_000 - expectedImported, rejects.size());
+            long previous = -1;
+            for (String reject : rejects) {
+                long offset = Long.parseLong(reject.substring(0, reject.indexOf(',')));
+                assertTrue(offset > previous);
+                previous = offset;
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void longLineTest() throws IOException {
+        Path csv = directory.resolve("accounts.csv");
+        Files.writeString(csv, "a@b.com,1\n" + "x".repeat(200) + "@b.com,1\nc@d.com,1\n");
+        AccountImporter importer = new AccountImporter(new Bank(), ForkJoinPool.commonPool(), 64, 16);
+        assertThrows(IOException.class, () -> importer.importFile(csv, directory.resolve("rejects.csv")));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AccountImporter(new Bank(), ForkJoinPool.commonPool(), 0, 1));
+    }
+
+}
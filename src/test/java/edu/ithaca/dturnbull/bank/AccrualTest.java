@@ -0,0 +1,203 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccrualTest {
+
+    @Test
+    void interestTest() throws InterruptedException {
+        Bank bank = new Bank();
+        bank.openAccountCents("a@b.com", 1_000);
+        bank.openAccountCents("b@c.com", 25);
+        bank.openAccountCents("c@d.com", 0); // boundary: nothing to pay on
+        Accrual accrual = new Accrual(bank, Accrual.interest(100_000_000)); // 10%
+        accrual.run(Durability.NONE);
+        assertEquals(1_100, bank.find("a@b.com").getBalanceCents());
+        assertEquals(27, bank.find("b@c.com").getBalanceCents()); // 2.5 rounds to even
+        assertEquals(0, bank.find("c@d.com").getBalanceCents());
+        assertTrue(accrual.isDone());
+        assertEquals(3, accrual.changed());
+        assertEquals(102, accrual.netCents());
+
+        accrual.run(Durability.NONE); // already done, changes nothing
+        assertEquals(1_100, bank.find("a@b.com").getBalanceCents());
+
+        assertThrows(IllegalArgumentException.class, () -> Accrual.interest(-1));
+    }
+
+    @Test
+    void feeTest() throws InterruptedException {
+        Bank bank = new Bank();
+        bank.openAccountCents("a@b.com", 10_000);
+        bank.openAccountCents("b@c.com", 9_999);
+        bank.openAccountCents("c@d.com", 300);
+        new Accrual(bank, Accrual.fee(500, 10_000)).run(Durability.NONE);
+        assertEquals(10_000, bank.find("a@b.com").getBalanceCents()); // boundary: waived
+        assertEquals(9_499, bank.find("b@c.com").getBalanceCents());
+        assertEquals(0, bank.find("c@d.com").getBalanceCents()); // only charged what it has
+
+        assertThrows(IllegalArgumentException.class, () -> Accrual.fee(-1, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new Accrual(bank, Accrual.fee(1, 0), ForkJoinPool.commonPool(), 0));
+    }
+
+    @Test
+    void journalTest(@TempDir Path directory) throws Exception {
+        try (Journal journal = new Journal(directory, 1 << 20, 1_000)) {
+            TransactionHistory history = new TransactionHistory(4);
+            Bank bank = new Bank(4, 0, journal, history);
+            for (int i = 0; i < 1_000; i++) {
+                bank.openAccountCents("user" + i + "@bank.com", i * 100);
+            }
+            new Accrual(bank, Accrual.interest(10_000_000), ForkJoinPool.commonPool(), 64).run(Durability.SYNC);
+            new Accrual(bank, Accrual.fee(50, 50_000)).run(Durability.SYNC);
+            TransactionHistory.Entries entries = history.newEntries();
+            assertEquals(2, history.read(bank.find("user1@bank.com"), entries)); // 1.00 earned 0.01, then a fee
+            assertEquals(TransactionHistory.DEPOSIT, entries.type(0));
+            assertEquals(1, entries.cents(0));
+            assertEquals(TransactionHistory.WITHDRAWAL, entries.type(1));
+            assertEquals(50, entries.cents(1));
+            assertEquals(0, history.read(bank.find("user0@bank.com"), entries)); // unchanged, nothing recorded
+
+            TransactionHistory recoveredHistory = new TransactionHistory(4);
+            Bank recovered = Bank.recover(journal, 4, recoveredHistory);
+            for (int i = 0; i < 1_000; i++) {
+                String email = "user" + i + "@bank.com";
+                assertEquals(bank.find(email).getBalanceCents(), recovered.find(email).getBalanceCents());
+            }
+
+            // and accruals on the recovered bank are recorded again
+            new Accrual(recovered, Accrual.fee(50, 50_000)).run(Durability.NONE);
+            assertEquals(1, recoveredHistory.read(recovered.find("user1@bank.com"), entries));
+            assertEquals(TransactionHistory.WITHDRAWAL, entries.type(0));
+        }
+    }
+
+    @Test
+    void resumeTest() throws InterruptedException {
+        Bank bank = new Bank();
+        for (int i = 0; i < 1_000; i++) {
+            bank.openAccountCents("user" + i + "@bank.com", 1_000);
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        // The first run blocks in the rule until the test has interrupted it
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Accrual accrual = new Accrual(bank, balance -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return 1;
+        }, pool, 10);
+        Thread runner = Thread.currentThread();
+        Thread interrupter = new Thread(() -> {
+            try {
+                started.await();
+                runner.interrupt();
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                // released below
+            }
+            release.countDown();
+        });
+        interrupter.start();
+        try {
+            assertThrows(InterruptedException.class, () -> accrual.run(Durability.NONE));
+            interrupter.join();
+
+            accrual.run(Durability.NONE);
+        } finally {
+            pool.shutdown();
+        }
+        assertTrue(accrual.isDone());
+        bank.forEach(account -> assertEquals(1_001, account.getBalanceCents())); // never twice
+        assertEquals(1_000, accrual.netCents());
+    }
+
+    @Test
+    void failureTest() throws InterruptedException {
+        Bank bank = new Bank();
+        bank.openAccountCents("a@b.com", 100);
+        bank.openAccountCents("b@c.com", Long.MAX_VALUE);
+        Accrual accrual = new Accrual(bank, Accrual.interest(100_000_000), ForkJoinPool.commonPool(), 1);
+        assertThrows(ArithmeticException.class, () -> accrual.run(Durability.NONE));
+        assertEquals(110, bank.find("a@b.com").getBalanceCents()); // other chunks still ran
+        assertEquals(Long.MAX_VALUE, bank.find("b@c.com").getBalanceCents());
+        assertEquals(1, accrual.changed());
+
+        // once the balance fits, running again finishes without touching a@b.com
+        bank.find("b@c.com").adjustCents(-Long.MAX_VALUE + 1_000);
+        accrual.run(Durability.NONE);
+        assertEquals(110, bank.find("a@b.com").getBalanceCents());
+        assertEquals(1_100, bank.find("b@c.com").getBalanceCents());
+    }
+
+    @Test
+    void ruleFailureTest() throws InterruptedException {
+        Bank bank = new Bank();
+        bank.openAccountCents("a@b.com", 100);
+        bank.openAccountCents("b@c.com", 666);
+        Accrual.Rule rule = balanceCents -> {
+            if (balanceCents == 666) {
+                throw new IllegalStateException("Bad balance");
+            }
+            return 10;
+        };
+        Accrual accrual = new Accrual(bank, rule, ForkJoinPool.commonPool(), 1);
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> accrual.run(Durability.NONE));
+        assertEquals("Bad balance", e.getMessage());
+        assertEquals(110, bank.find("a@b.com").getBalanceCents());
+        assertEquals(666, bank.find("b@c.com").getBalanceCents());
+        assertEquals(1, accrual.changed());
+
+        // an Error from the rule comes out as it was thrown
+        Accrual broken = new Accrual(bank, balanceCents -> {
+            throw new AssertionError("Broken rule");
+        }, ForkJoinPool.commonPool(), 1);
+        assertEquals("Broken rule", assertThrows(AssertionError.class, () -> broken.run(Durability.NONE)).getMessage());
+    }
+
+    @Test
+    void concurrentTest() throws InterruptedException {
+        Bank bank = new Bank();
+        for (int i = 0; i < 200; i++) {
+            bank.openAccountCents("user" + i + "@bank.com", 10_000);
+        }
+        // Postings go on during the sweep, and the sweep must see their balances
+        Thread poster = new Thread(() -> {
+            for (int i = 0; i < 20_000; i++) {
+                try {
+                    bank.transfer(bank.find("user" + i % 200 + "@bank.com"),
+                            bank.find("user" + (i * 7 + 1) % 200 + "@bank.com"), 1, Durability.NONE);
+                } catch (InsufficientFundsException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        poster.start();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Accrual accrual = new Accrual(bank, Accrual.fee(100, Long.MAX_VALUE), pool, 8);
+        try {
+            accrual.run(Durability.NONE);
+        } finally {
+            pool.shutdown();
+        }
+        poster.join();
+        long total = 0;
+        for (int i = 0; i < 200; i++) {
+            total += bank.find("user" + i + "@bank.com").getBalanceCents();
+        }
+        assertEquals(200 * 10_000 - 200 * 100, total);
+        assertEquals(-200 * 100, accrual.netCents());
+    }
+
+}
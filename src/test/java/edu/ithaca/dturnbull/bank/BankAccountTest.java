@@ -1,5 +1,13 @@
 package edu.ithaca.dturnbull.bank;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -238,4 +246,114 @@ class BankAccountTest {
         assertEquals(0.01, bankAccount1.getBalance(), 0.001);
         assertEquals(299.99, bankAccount2.getBalance(), 0.001);
     }
-}
\ No newline at end of file
+
+    @Test
+    void centsTest() throws InsufficientFundsException {
+        BankAccount bankAccount = BankAccount.ofCents("a@b.com", 20034);
+        assertEquals(20034, bankAccount.getBalanceCents()); // not boundary: positive balance
+        assertEquals(200.34, bankAccount.getBalance(), 0.001);
+        assertEquals(0, BankAccount.ofCents("b@c.com", 0).getBalanceCents()); // boundary: zero balance
+        assertThrows(IllegalArgumentException.class, () -> BankAccount.ofCents("b@c.com", -1)); // boundary: negative
+        assertThrows(IllegalArgumentException.class, () -> BankAccount.ofCents("", 100)); // no email
+
+        bankAccount.depositCents(66);
+        assertEquals(20100, bankAccount.getBalanceCents());
+        assertThrows(IllegalArgumentException.class, () -> bankAccount.depositCents(-1)); // boundary: negative
+
+        bankAccount.withdrawCents(100);
+        assertEquals(20000, bankAccount.getBalanceCents());
+        assertThrows(IllegalArgumentException.class, () -> bankAccount.withdrawCents(0)); // boundary: zero
+        assertThrows(InsufficientFundsException.class, () -> bankAccount.withdrawCents(20001)); // boundary: just over
+
+        BankAccount bankAccount2 = BankAccount.ofCents("b@c.com", Long.MAX_VALUE - 1);
+        assertThrows(ArithmeticException.class, () -> bankAccount2.depositCents(2)); // boundary: overflow
+        assertEquals(Long.MAX_VALUE - 1, bankAccount2.getBalanceCents()); // balance untouched
+
+        bankAccount.transferCents(bankAccount2, 1);
+        assertEquals(19999, bankAccount.getBalanceCents());
+        assertEquals(Long.MAX_VALUE, bankAccount2.getBalanceCents());
+        assertThrows(InsufficientFundsException.class, () -> bankAccount.transferCents(bankAccount2, 20000));
+    }
+
+    @Test
+    void noDriftTest() throws InsufficientFundsException {
+        BankAccount bankAccount = new BankAccount("a@b.com", 0);
+        for (int i = 0; i < 1_000_000; i++) {
+            bankAccount.deposit(0.1);
+        }
+        assertEquals(10_000_000, bankAccount.getBalanceCents()); // a double balance would be off by now
+        for (int i = 0; i < 1_000_000; i++) {
+            bankAccount.withdraw(0.1);
+        }
+        assertEquals(0, bankAccount.getBalanceCents());
+    }
+
+    // Runs task on threads threads at once and returns each result
+    private static <T> List<T> runConcurrently(int threads, Callable<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentDepositTest() throws Exception {
+        BankAccount bankAccount = new BankAccount("a@b.com", 0);
+        runConcurrently(8, () -> {
+            for (int i = 0; i < 100_000; i++) {
+                bankAccount.depositCents(1);
+            }
+            return null;
+        });
+        assertEquals(800_000, bankAccount.getBalanceCents()); // no lost updates
+    }
+
+    @Test
+    void concurrentWithdrawTest() throws Exception {
+        BankAccount bankAccount = BankAccount.ofCents("a@b.com", 100_000);
+        // Each thread tries to take more than its share, so they race for the last cents
+        List<Integer> withdrawn = runConcurrently(8, () -> {
+            int count = 0;
+            for (int i = 0; i < 50_000; i++) {
+                try {
+                    bankAccount.withdrawCents(1);
+                    count++;
+                } catch (InsufficientFundsException e) {
+                    // expected once the account is empty
+                }
+            }
+            return count;
+        });
+        assertEquals(100_000, withdrawn.stream().mapToInt(Integer::intValue).sum()); // every cent taken exactly once
+        assertEquals(0, bankAccount.getBalanceCents()); // never overdrawn
+    }
+
+    @Test
+    void concurrentDepositWithdrawTest() throws Exception {
+        BankAccount bankAccount = BankAccount.ofCents("a@b.com", 1_000);
+        runConcurrently(8, () -> {
+            for (int i = 0; i < 100_000; i++) {
+                bankAccount.depositCents(3);
+                bankAccount.withdrawCents(3);
+                assertTrue(bankAccount.getBalanceCents() >= 0);
+            }
+            return null;
+        });
+        assertEquals(1_000, bankAccount.getBalanceCents());
+    }
+}
@@ -0,0 +1,204 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BankTest {
+
+    @Test
+    void openAccountTest() {
+        Bank bank = new Bank();
+        BankAccount bankAccount = bank.openAccount("a@b.com", 200);
+        assertEquals("a@b.com", bankAccount.getEmail());
+        assertEquals(200, bankAccount.getBalance(), 0.001);
+        assertEquals(1, bank.size());
+
+        BankAccount bankAccount2 = bank.openAccountCents("b@c.com", 2034);
+        assertEquals(2034, bankAccount2.getBalanceCents());
+        assertEquals(2, bank.size());
+
+        // constructor validation still applies
+        assertThrows(IllegalArgumentException.class, () -> bank.openAccount("", 100)); // no email
+        assertThrows(IllegalArgumentException.class, () -> bank.openAccount("c@d.com", 100.001)); // invalid amount
+        assertThrows(IllegalArgumentException.class, () -> bank.openAccountCents("c@d.com", -1)); // negative
+
+        // one account per email
+        assertThrows(IllegalArgumentException.class, () -> bank.openAccount("a@b.com", 5));
+        assertEquals(200, bank.find("a@b.com").getBalance(), 0.001); // first account kept
+        assertEquals(2, bank.size());
+    }
+
+    @Test
+    void findTest() {
+        Bank bank = new Bank(4, 100);
+        BankAccount bankAccount = bank.openAccount("a@b.com", 200);
+        assertSame(bankAccount, bank.find("a@b.com"));
+        assertNull(bank.find("b@c.com")); // never opened
+        assertNull(bank.find("A@b.com")); // emails are matched exactly
+
+        assertThrows(IllegalArgumentException.class, () -> new Bank(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new Bank(4, -1));
+    }
+
+    @Test
+    void forEachTest() {
+        Bank bank = new Bank(8, 0);
+        for (int i = 0; i < 1_000; i++) {
+            bank.openAccountCents("user" + i + "@bank.com", i);
+        }
+        AtomicInteger count = new AtomicInteger();
+        long[] total = new long[1];
+        bank.forEach(account -> {
+            count.incrementAndGet();
+            total[0] += account.getBalanceCents();
+        });
+        assertEquals(1_000, count.get());
+        assertEquals(999 * 1_000 / 2, total[0]);
+    }
+
+    @Test
+    void concurrentOpenTest() throws Exception {
+        Bank bank = new Bank();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    // Every thread races to open the same emails
+                    int opened = 0;
+                    for (int i = 0; i < 10_000; i++) {
+                        try {
+                            bank.openAccountCents("user" + i + "@bank.com", 1);
+                            opened++;
+                        } catch (IllegalArgumentException e) {
+                            // another thread won
+                        }
+                    }
+                    return opened;
+                }));
+            }
+            int opened = 0;
+            for (Future<Integer> future : futures) {
+                opened += future.get();
+            }
+            assertEquals(10_000, opened); // each email opened exactly once
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(10_000, bank.size());
+        assertNotNull(bank.find("user9999@bank.com"));
+    }
+
+    @Test
+    void postingTest() throws InsufficientFundsException {
+        Bank bank = new Bank();
+        BankAccount bankAccount1 = bank.openAccountCents("a@b.com", 200);
+        BankAccount bankAccount2 = bank.openAccountCents("b@c.com", 100);
+
+        bank.deposit(bankAccount1, 50, Durability.NONE);
+        bank.withdraw(bankAccount2, 100, Durability.NONE); // boundary: entire balance
+        bank.transfer(bankAccount1, bankAccount2, 250, Durability.NONE); // boundary: entire balance
+        assertEquals(0, bankAccount1.getBalanceCents());
+        assertEquals(250, bankAccount2.getBalanceCents());
+
+        assertThrows(InsufficientFundsException.class, () -> bank.withdraw(bankAccount1, 1, Durability.NONE));
+        assertThrows(IllegalArgumentException.class, () -> bank.deposit(bankAccount1, -1, Durability.NONE));
+        BankAccount stranger = BankAccount.ofCents("a@b.com", 100); // same email, not in the bank
+        assertThrows(IllegalArgumentException.class, () -> bank.deposit(stranger, 1, Durability.NONE));
+        assertThrows(IllegalArgumentException.class,
+                () -> bank.transfer(stranger, bankAccount2, 1, Durability.NONE));
+    }
+
+    @Test
+    void recoverTest(@TempDir Path directory) throws IOException, InsufficientFundsException {
+        try (Journal journal = new Journal(directory, 4096, 1_000)) {
+            Bank bank = new Bank(4, 0, journal);
+            BankAccount bankAccount1 = bank.openAccount("a@b.com", 200);
+            BankAccount bankAccount2 = bank.openAccountCents("b@c.com", 100, Durability.SYNC);
+            bank.deposit(bankAccount1, 1234, Durability.GROUP);
+            bank.withdraw(bankAccount2, 99, Durability.SYNC);
+            bank.transfer(bankAccount1, bankAccount2, 20_000, Durability.NONE);
+            assertThrows(InsufficientFundsException.class,
+                    () -> bank.withdraw(bankAccount2, 50_000, Durability.NONE)); // rejected, not journaled
+            assertThrows(IllegalArgumentException.class, () -> bank.openAccount("a@b.com", 5)); // duplicate
+            bankAccount1.depositCents(1); // not through the bank, not journaled
+        }
+        try (Journal journal = new Journal(directory, 4096, 1_000)) {
+            Bank bank = Bank.recover(journal);
+            assertEquals(2, bank.size());
+            assertEquals(1234, bank.find("a@b.com").getBalanceCents());
+            assertEquals(20_001, bank.find("b@c.com").getBalanceCents());
+
+            // keeps journaling after recovery
+            bank.deposit(bank.find("a@b.com"), 1, Durability.NONE);
+        }
+        try (Journal journal = new Journal(directory, 4096, 1_000)) {
+            assertEquals(1235, Bank.recover(journal).find("a@b.com").getBalanceCents());
+        }
+
+        // an account that could not be journaled is not opened
+        Journal closed = new Journal(directory, 4096, 1_000);
+        Bank bank = new Bank(4, 0, closed);
+        closed.close();
+        assertThrows(UncheckedIOException.class, () -> bank.openAccountCents("c@d.com", 1));
+        assertNull(bank.find("c@d.com"));
+        assertEquals(0, bank.size());
+    }
+
+    @Test
+    void concurrentRecoverTest(@TempDir Path directory) throws Exception {
+        int threads = 8;
+        long[] expected = new long[threads];
+        try (Journal journal = new Journal(directory, 1 << 16, 200)) {
+            Bank bank = new Bank(4, 0, journal);
+            for (int t = 0; t < threads; t++) {
+                bank.openAccountCents("user" + t + "@bank.com", 1_000);
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    BankAccount mine = bank.find("user" + t + "@bank.com");
+                    BankAccount next = bank.find("user" + (t + 1) % threads + "@bank.com");
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < 2_000; i++) {
+                            bank.deposit(mine, 3, i % 100 == 0 ? Durability.GROUP : Durability.NONE);
+                            try {
+                                bank.transfer(mine, next, 5, Durability.NONE);
+                            } catch (InsufficientFundsException e) {
+                                // fine, balances are random walks
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            for (int t = 0; t < threads; t++) {
+                expected[t] = bank.find("user" + t + "@bank.com").getBalanceCents();
+            }
+        }
+        try (Journal journal = new Journal(directory, 1 << 16, 200)) {
+            Bank bank = Bank.recover(journal);
+            for (int t = 0; t < threads; t++) {
+                assertEquals(expected[t], bank.find("user" + t + "@bank.com").getBalanceCents());
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailValidatorTest {
+
+    // The per-character isEmailValid used before EmailValidator existed
+    private static boolean legacyIsEmailValid(String email) {
+        if (email.isBlank()) {
+            return false;
+        }
+        int atIndex = email.indexOf('@');
+        int lastPeriodIndex = email.lastIndexOf('.');
+        if (atIndex == -1 || lastPeriodIndex == -1 || lastPeriodIndex <= atIndex) {
+            return false;
+        }
+        if (atIndex == 0) {
+            return false;
+        }
+        for (int i = 0; i < atIndex; i++) {
+            char c = email.charAt(i);
+            boolean charAlphaNum = Character.isLetterOrDigit(c);
+            if (!charAlphaNum) {
+                if (!legacyIsPrefixSpecial(c)) {
+                    return false;
+                } else {
+                    if (!Character.isLetterOrDigit(email.charAt(i + 1)) || i == 0) {
+                        return false;
+                    }
+                    i++;
+                }
+            }
+        }
+        if (lastPeriodIndex + 2 >= email.length()) {
+            return false;
+        }
+        for (int i = atIndex + 1; i < email.length(); i++) {
+            char c = email.charAt(i);
+            if (!(Character.isLetterOrDigit(c)) && !(c == '-')) {
+                if (!(c == '.' && i == lastPeriodIndex)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean legacyIsPrefixSpecial(char c) {
+        char[] prefixSpecial = { '.', '!', '$', '%', '&', '\'', '*', '+', '-', '/', '=', '?', '^', '_', '`', '{', '|',
+                '}', '~' };
+        for (char special : prefixSpecial) {
+            if (special == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void isPrefixSpecialTest() {
+        for (char c = 0; c < Character.MAX_VALUE; c++) {
+            assertEquals(legacyIsPrefixSpecial(c), EmailValidator.isPrefixSpecial(c), "char " + (int) c);
+        }
+    }
+
+    @Test
+    void edgeCasesTest() {
+        assertTrue(EmailValidator.isValid("é@ü.de")); // non-ASCII letters count as letters
+        assertTrue(EmailValidator.isValid("a.b-c@d.ee")); // special char right after a special's skip
+        assertFalse(EmailValidator.isValid("a.@b.com")); // special char right before @
+        assertFalse(EmailValidator.isValid(" \t\n")); // blank
+        assertFalse(EmailValidator.isValid("a b@c.com")); // whitespace in prefix
+        assertFalse(EmailValidator.isValid("a@b\u00A0.com")); // non-ASCII space in domain
+        assertThrows(NullPointerException.class, () -> EmailValidator.isValid(null));
+    }
+
+    @Test
+    void matchesLegacyCheckTest() {
+        char[] alphabet = { 'a', 'Z', '7', '@', '@', '.', '.', '-', '_', '#', ' ', '\t', '!', '~', 'é', 'ß', '٣',
+                '\u00A0', '\u2003', '\uD83D', '\uDE00' };
+        Random random = new Random(345);
+        for (int n = 0; n < 500_000; n++) {
+            String email = randomPart(random, alphabet, 12);
+            assertEquals(legacyIsEmailValid(email), EmailValidator.isValid(email), "email " + email);
+
+            // Mostly well formed, so valid results get exercised too
+            email = randomPart(random, alphabet, 6) + "@" + randomPart(random, alphabet, 6) + "."
+                    + randomPart(random, alphabet, 4);
+            assertEquals(legacyIsEmailValid(email), EmailValidator.isValid(email), "email " + email);
+        }
+    }
+
+    private static String randomPart(Random random, char[] alphabet, int maxLength) {
+        char[] chars = new char[1 + random.nextInt(maxLength)];
+        for (int i = 0; i < chars.length; i++) {
+            // Letters and digits most of the time
+            chars[i] = alphabet[random.nextInt(4) == 0 ? random.nextInt(alphabet.length) : random.nextInt(3)];
+        }
+        return new String(chars);
+    }
+
+}
@@ -0,0 +1,152 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTest {
+
+    @TempDir
+    Path directory;
+
+    private static List<String> readAll(Journal journal, long fromLsn) {
+        List<String> records = new ArrayList<>();
+        journal.replay(fromLsn, (type, email, otherEmail, cents, endLsn) -> records
+                .add(type + " " + email + " " + otherEmail + " " + cents));
+        return records;
+    }
+
+    @Test
+    void appendReplayTest() throws IOException {
+        try (Journal journal = new Journal(directory, 4096, 1_000)) {
+            assertEquals(0, journal.endLsn()); // boundary: empty journal
+            assertTrue(readAll(journal, 0).isEmpty());
+
+            long first = journal.append(Journal.OPEN, "a@b.com", null, 200);
+            journal.append(Journal.TRANSFER, "a@b.com", "é@ü.de", Long.MAX_VALUE);
+            long last = journal.append(Journal.WITHDRAW, "a@b.com", null, 0);
+            assertEquals(last, journal.endLsn());
+
+            assertEquals(List.of("1 a@b.com null 200", "4 a@b.com é@ü.de " + Long.MAX_VALUE, "3 a@b.com null 0"),
+                    readAll(journal, 0));
+            assertEquals(2, readAll(journal, first).size()); // replay from a position
+        }
+    }
+
+    @Test
+    void durabilityTest() throws IOException {
+        try (Journal journal = new Journal(directory, 4096, 500)) {
+            long lsn = journal.append(Journal.DEPOSIT, "a@b.com", null, 1);
+            journal.awaitDurable(lsn, Durability.NONE);
+            journal.awaitDurable(lsn, Durability.GROUP); // returns once the flusher has run
+            assertTrue(journal.durableLsn() >= lsn);
+
+            lsn = journal.append(Journal.DEPOSIT, "a@b.com", null, 2);
+            journal.awaitDurable(lsn, Durability.SYNC);
+            assertTrue(journal.durableLsn() >= lsn);
+        }
+    }
+
+    @Test
+    void whenDurableTest() throws Exception {
+        CompletableFuture<Void> pending;
+        long lsn;
+        try (Journal journal = new Journal(directory, 4096, 60_000_000)) {
+            lsn = journal.append(Journal.DEPOSIT, "a@b.com", null, 1);
+            assertTrue(journal.whenDurable(lsn, Durability.NONE).isDone());
+            // the flusher is asked right away, not after its minute-long interval
+            journal.whenDurable(lsn, Durability.GROUP).get(10, TimeUnit.SECONDS);
+            assertTrue(journal.durableLsn() >= lsn);
+            assertTrue(journal.whenDurable(lsn, Durability.SYNC).isDone()); // boundary: already durable
+
+            lsn = journal.append(Journal.DEPOSIT, "a@b.com", null, 2);
+            journal.whenDurable(lsn, Durability.SYNC).get(10, TimeUnit.SECONDS);
+            assertTrue(journal.durableLsn() >= lsn);
+
+            // a position past the end never becomes durable, so close fails it
+            pending = journal.whenDurable(Long.MAX_VALUE, Durability.GROUP);
+        }
+        ExecutionException e = assertThrows(ExecutionException.class, () -> pending.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IOException);
+    }
+
+    @Test
+    void reopenTest() throws IOException {
+        long end;
+        try (Journal journal = new Journal(directory, 4096, 1_000)) {
+            journal.append(Journal.OPEN, "a@b.com", null, 200);
+            end = journal.append(Journal.DEPOSIT, "a@b.com", null, 5);
+        }
+        try (Journal journal = new Journal(directory, 4096, 1_000)) {
+            assertEquals(end, journal.endLsn()); // continues after the last record
+            journal.append(Journal.DEPOSIT, "a@b.com", null, 6);
+            assertEquals(List.of("1 a@b.com null 200", "2 a@b.com null 5", "2 a@b.com null 6"), readAll(journal, 0));
+        }
+    }
+
+    @Test
+    void tornRecordTest() throws IOException {
+        long good;
+        try (Journal journal = new Journal(directory, 4096, 1_000)) {
+            good = journal.append(Journal.OPEN, "a@b.com", null, 200);
+            journal.append(Journal.DEPOSIT, "a@b.com", null, 5);
+        }
+        // Corrupt one payload byte of the second record, as if the crash came mid-write
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 99 }), good + 10);
+        }
+        try (Journal journal = new Journal(directory, 4096, 1_000)) {
+            assertEquals(good, journal.endLsn()); // the torn record is dropped
+            assertEquals(List.of("1 a@b.com null 200"), readAll(journal, 0));
+            journal.append(Journal.DEPOSIT, "a@b.com", null, 7);
+            assertEquals(List.of("1 a@b.com null 200", "2 a@b.com null 7"), readAll(journal, 0));
+        }
+    }
+
+    @Test
+    void segmentRollTest() throws IOException {
+        try (Journal journal = new Journal(directory, 1024, 1_000)) {
+            for (int i = 0; i < 200; i++) {
+                journal.append(Journal.DEPOSIT, "user" + i + "@bank.com", null, i);
+            }
+            assertTrue(journal.endLsn() > 4 * 1024); // several segments
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.count() > 4);
+        }
+        try (Journal journal = new Journal(directory, 1024, 1_000)) {
+            List<String> records = readAll(journal, 0);
+            assertEquals(200, records.size());
+            assertEquals("2 user199@bank.com null 199", records.get(199));
+        }
+    }
+
+    @Test
+    void invalidTest() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> new Journal(directory, 10, 1_000)); // segment too small
+        assertThrows(IllegalArgumentException.class, () -> new Journal(directory, 4096, 0)); // no commit interval
+        Journal journal = new Journal(directory, 1024, 1_000);
+        assertThrows(IllegalArgumentException.class,
+                () -> journal.append(Journal.OPEN, "a".repeat(2000) + "@b.com", null, 0)); // does not fit a segment
+        journal.close();
+        assertThrows(IOException.class, () -> journal.append(Journal.OPEN, "a@b.com", null, 0)); // closed
+    }
+
+}
@@ -0,0 +1,92 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void bucketTest() {
+        // exact below 32
+        for (long v = 0; v < 32; v++) {
+            assertEquals(v, LatencyHistogram.lowestValue(LatencyHistogram.index(v)));
+        }
+        // buckets are contiguous and each value lands in the bucket that covers it
+        for (int i = 1; i < LatencyHistogram.BUCKETS; i++) {
+            long low = LatencyHistogram.lowestValue(i);
+            assertTrue(low > LatencyHistogram.lowestValue(i - 1));
+            assertEquals(i, LatencyHistogram.index(low));
+            assertEquals(i - 1, LatencyHistogram.index(low - 1));
+        }
+        Random random = new Random(11);
+        for (int i = 0; i < 100_000; i++) {
+            long value = random.nextLong() >>> (24 + random.nextInt(40));
+            long low = LatencyHistogram.lowestValue(LatencyHistogram.index(value));
+            assertTrue(low <= value);
+            assertTrue(value - low <= value / 32); // within about 3%
+        }
+    }
+
+    @Test
+    void percentileTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.valueAtPercentile(99)); // boundary: empty
+
+        long[] values = new long[10_000];
+        Random random = new Random(3);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 100 + random.nextInt(1_000_000);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        assertEquals(values.length, histogram.count());
+        for (double percentile : new double[] { 0, 50, 90, 99, 99.9, 100 }) {
+            long exact = values[Math.max(0, (int) Math.ceil(percentile / 100 * values.length) - 1)];
+            long reported = histogram.valueAtPercentile(percentile);
+            assertTrue(reported <= exact && exact - reported <= exact / 32, percentile + ": " + reported);
+        }
+
+        histogram.record(-5); // counts as 0
+        histogram.record(Long.MAX_VALUE); // capped
+        assertEquals(0, histogram.valueAtPercentile(0));
+        assertEquals(1L << 40, histogram.valueAtPercentile(100));
+        assertThrows(IllegalArgumentException.class, () -> histogram.valueAtPercentile(101));
+        assertThrows(IllegalArgumentException.class, () -> histogram.valueAtPercentile(Double.NaN));
+
+        histogram.reset();
+        assertEquals(0, histogram.count());
+    }
+
+    @Test
+    void concurrentRecordTest() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100_000; i++) {
+                        histogram.record(i);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(threads * 100_000L, histogram.count()); // nothing lost
+    }
+
+}
@@ -0,0 +1,107 @@
+package edu.ithaca.dturnbull.bank;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ithaca.dturnbull.bank.Metrics.Operation;
+import edu.ithaca.dturnbull.bank.Metrics.Reason;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsTest {
+
+    @BeforeEach
+    void enable() {
+        Metrics.reset();
+        Metrics.setEnabled(true);
+    }
+
+    @AfterEach
+    void disable() {
+        Metrics.setEnabled(false);
+        Metrics.reset();
+    }
+
+    @Test
+    void accountTest() throws InsufficientFundsException {
+        BankAccount bankAccount1 = new BankAccount("a@b.com", 200);
+        BankAccount bankAccount2 = new BankAccount("b@c.com", 0);
+        assertThrows(IllegalArgumentException.class, () -> new BankAccount("", 100));
+        assertThrows(IllegalArgumentException.class, () -> new BankAccount("c@d.com", 100.001));
+        assertEquals(4, Metrics.count(Operation.CONSTRUCT));
+        assertEquals(1, Metrics.rejections(Operation.CONSTRUCT, Reason.INVALID_EMAIL));
+        assertEquals(1, Metrics.rejections(Operation.CONSTRUCT, Reason.INVALID_AMOUNT));
+
+        bankAccount1.deposit(10);
+        bankAccount1.depositCents(5);
+        assertThrows(IllegalArgumentException.class, () -> bankAccount1.deposit(-1));
+        assertThrows(ArithmeticException.class, () -> bankAccount1.depositCents(Long.MAX_VALUE));
+        assertEquals(4, Metrics.count(Operation.DEPOSIT));
+        assertEquals(1, Metrics.rejections(Operation.DEPOSIT, Reason.INVALID_AMOUNT));
+        assertEquals(1, Metrics.rejections(Operation.DEPOSIT, Reason.OVERFLOW));
+
+        bankAccount1.withdraw(5);
+        assertThrows(InsufficientFundsException.class, () -> bankAccount2.withdraw(1));
+        assertThrows(IllegalArgumentException.class, () -> bankAccount2.withdrawCents(0));
+        assertEquals(3, Metrics.count(Operation.WITHDRAW));
+        assertEquals(1, Metrics.rejections(Operation.WITHDRAW, Reason.INSUFFICIENT_FUNDS));
+        assertEquals(1, Metrics.rejections(Operation.WITHDRAW, Reason.INVALID_AMOUNT));
+
+        // a transfer counts once, not as a withdrawal and a deposit
+        bankAccount1.transfer(bankAccount2, 1);
+        assertThrows(InsufficientFundsException.class, () -> bankAccount2.transferCents(bankAccount1, 1_000));
+        assertThrows(IllegalArgumentException.class, () -> bankAccount2.transfer(bankAccount1, 0.001));
+        assertEquals(3, Metrics.count(Operation.TRANSFER));
+        assertEquals(1, Metrics.rejections(Operation.TRANSFER, Reason.INSUFFICIENT_FUNDS));
+        assertEquals(1, Metrics.rejections(Operation.TRANSFER, Reason.INVALID_AMOUNT));
+        assertEquals(4, Metrics.count(Operation.DEPOSIT));
+        assertEquals(3, Metrics.count(Operation.WITHDRAW));
+
+        assertEquals(3, Metrics.latency(Operation.TRANSFER).count());
+        assertTrue(Metrics.latency(Operation.TRANSFER).valueAtPercentile(100) > 0);
+    }
+
+    @Test
+    void validationTest() {
+        assertTrue(BankAccount.isEmailValid("a@b.com"));
+        assertFalse(BankAccount.isEmailValid("a@b"));
+        assertTrue(BankAccount.isAmountValid(1.5));
+        assertFalse(BankAccount.isAmountValid(-1));
+        assertFalse(BankAccount.isAmountValid(1.001));
+        assertEquals(2, Metrics.count(Operation.EMAIL_VALIDATION));
+        assertEquals(1, Metrics.rejections(Operation.EMAIL_VALIDATION, Reason.INVALID_EMAIL));
+        assertEquals(3, Metrics.count(Operation.AMOUNT_VALIDATION));
+        assertEquals(2, Metrics.rejections(Operation.AMOUNT_VALIDATION, Reason.INVALID_AMOUNT));
+    }
+
+    @Test
+    void bankTest() throws InsufficientFundsException {
+        Bank bank = new Bank();
+        BankAccount bankAccount1 = bank.openAccountCents("a@b.com", 200);
+        BankAccount bankAccount2 = bank.openAccountCents("b@c.com", 0);
+        bank.deposit(bankAccount1, 1, Durability.NONE);
+        bank.transfer(bankAccount1, bankAccount2, 100, Durability.NONE);
+        assertThrows(InsufficientFundsException.class, () -> bank.withdraw(bankAccount2, 101, Durability.NONE));
+        assertEquals(1, Metrics.count(Operation.DEPOSIT));
+        assertEquals(1, Metrics.count(Operation.TRANSFER));
+        assertEquals(1, Metrics.rejections(Operation.WITHDRAW, Reason.INSUFFICIENT_FUNDS));
+    }
+
+    @Test
+    void switchTest() {
+        Metrics.setEnabled(false);
+        assertFalse(Metrics.isEnabled());
+        new BankAccount("a@b.com", 1).deposit(1);
+        assertEquals(0, Metrics.count(Operation.CONSTRUCT));
+        assertEquals(0, Metrics.count(Operation.DEPOSIT));
+        assertEquals(0, Metrics.latency(Operation.DEPOSIT).count());
+
+        Metrics.setEnabled(true);
+        new BankAccount("a@b.com", 1).deposit(1);
+        assertEquals(1, Metrics.count(Operation.DEPOSIT));
+        Metrics.reset();
+        assertEquals(0, Metrics.count(Operation.DEPOSIT));
+    }
+
+}
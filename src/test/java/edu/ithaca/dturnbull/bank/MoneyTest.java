@@ -0,0 +1,99 @@
+package edu.ithaca.dturnbull.bank;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    // The string based check isAmountValid used before Money existed
+    private static boolean legacyIsAmountValid(double amount) {
+        if (amount < 0) {
+            return false;
+        }
+        String amountString = Double.toString(amount);
+        if (amountString.contains(".")) {
+            String[] parts = amountString.split("\\.");
+            if (parts[1].length() > 2) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    void isValidAmountTest() {
+        // numbers of digits after decimal
+        assertFalse(Money.isValidAmount(0.001)); // boundary case: lowest three digits after decimal
+        assertFalse(Money.isValidAmount(54.021)); // not boundary case: three digits after decimal
+        assertTrue(Money.isValidAmount(0.99)); // boundary case: highest two digits after decimal
+        assertTrue(Money.isValidAmount(2.1)); // not boundary: one digit after decimal
+        assertTrue(Money.isValidAmount(200.01)); // not boundary: two digits after decimal
+        assertTrue(Money.isValidAmount(0.29)); // border: 0.29 * 100 is not exactly 29 as a double
+
+        // negative amount
+        assertTrue(Money.isValidAmount(0.0)); // boundary: lowest positive amount
+        assertTrue(Money.isValidAmount(-0.0)); // boundary: negative zero is still zero
+        assertFalse(Money.isValidAmount(-0.01)); // boundary: highest negative amount
+        assertFalse(Money.isValidAmount(-100.00)); // not boundary: negative amount
+
+        // not a number
+        assertFalse(Money.isValidAmount(Double.NaN));
+        assertFalse(Money.isValidAmount(Double.POSITIVE_INFINITY));
+
+        // large amounts
+        assertTrue(Money.isValidAmount(12345678.9)); // not boundary: above where Double.toString switches to E notation
+        assertFalse(Money.isValidAmount(1e17)); // boundary: cents no longer fit in a long
+    }
+
+    @Test
+    void matchesLegacyCheckTest() {
+        // Every amount below 1,000 in steps of a tenth of a cent, where the old
+        // string check printed plain decimals
+        for (long mills = 0; mills < 1_000_000; mills++) {
+            double amount = mills / 1000.0;
+            assertEquals(legacyIsAmountValid(amount), Money.isValidAmount(amount), "amount " + amount);
+        }
+    }
+
+    @Test
+    void conversionTest() {
+        assertEquals(20034, Money.toCents(200.34)); // not boundary
+        assertEquals(29, Money.toCents(0.29)); // border: 0.29 * 100 is not exactly 29 as a double
+        assertEquals(0, Money.toCents(0)); // boundary: zero
+        assertThrows(IllegalArgumentException.class, () -> Money.toCents(10.001)); // three digits after decimal
+        assertThrows(IllegalArgumentException.class, () -> Money.toCents(-0.01)); // negative amount
+
+        assertEquals(200.34, Money.toAmount(20034));
+        assertEquals(0.29, Money.toAmount(29));
+    }
+
+    @Test
+    void arithmeticTest() {
+        assertEquals(30, Money.add(10, 20));
+        assertEquals(Long.MAX_VALUE, Money.add(Long.MAX_VALUE - 1, 1)); // boundary: largest balance
+        assertThrows(ArithmeticException.class, () -> Money.add(Long.MAX_VALUE, 1)); // boundary: overflow
+
+        assertEquals(-10, Money.subtract(10, 20));
+        assertThrows(ArithmeticException.class, () -> Money.subtract(Long.MIN_VALUE, 1)); // boundary: underflow
+    }
+
+    @Test
+    void applyRateTest() {
+        assertEquals(50, Money.applyRate(1_000, 50_000_000)); // 5%
+        assertEquals(1_000, Money.applyRate(1_000, Money.RATE_SCALE)); // boundary: 100%
+        assertEquals(0, Money.applyRate(0, 50_000_000)); // boundary: nothing to pay on
+        assertEquals(0, Money.applyRate(1_000, 0));
+        // ties go to the even cent
+        assertEquals(2, Money.applyRate(25, 100_000_000)); // 2.5
+        assertEquals(4, Money.applyRate(35, 100_000_000)); // 3.5
+        assertEquals(3, Money.applyRate(251, 10_000_000)); // 2.51 rounds up
+        assertEquals(2, Money.applyRate(249, 10_000_000)); // 2.49 rounds down
+        // large balances and rates do not overflow in between
+        assertEquals(922_337_203_685_477_581L, Money.applyRate(Long.MAX_VALUE, 100_000_000));
+        assertEquals(3_000_000_000_000L, Money.applyRate(1_000_000_000_000L, 3 * Money.RATE_SCALE));
+        assertThrows(ArithmeticException.class, () -> Money.applyRate(Long.MAX_VALUE, 2 * Money.RATE_SCALE));
+        assertThrows(IllegalArgumentException.class, () -> Money.applyRate(-1, 1));
+        assertThrows(IllegalArgumentException.class, () -> Money.applyRate(1, -1));
+    }
+
+}
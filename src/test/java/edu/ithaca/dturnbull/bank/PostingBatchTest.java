@@ -0,0 +1,176 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostingBatchTest {
+
+    @Test
+    void applyTest() {
+        BankAccount bankAccount1 = BankAccount.ofCents("a@b.com", 100);
+        BankAccount bankAccount2 = BankAccount.ofCents("b@c.com", Long.MAX_VALUE - 5);
+
+        PostingBatch batch = new PostingBatch(0); // boundary: grows from nothing
+        batch.addDeposit(bankAccount1, 50); // not boundary: valid deposit
+        batch.addWithdrawal(bankAccount1, 150); // boundary: entire balance after the deposit
+        batch.addWithdrawal(bankAccount1, 1); // boundary: just over balance
+        batch.addDeposit(bankAccount2, 5); // boundary: largest balance
+        batch.addDeposit(bankAccount2, 1); // boundary: overflow
+        batch.addDeposit(bankAccount1, -1); // boundary: negative deposit
+        batch.addWithdrawal(bankAccount1, 0); // boundary: zero withdrawal
+        batch.addDeposit(bankAccount1, 0); // boundary: zero deposit is allowed
+        assertEquals(8, batch.size());
+
+        byte[] results = batch.apply();
+        assertArrayEquals(new byte[] { PostingBatch.OK, PostingBatch.OK, PostingBatch.INSUFFICIENT_FUNDS,
+                PostingBatch.OK, PostingBatch.OVERFLOW, PostingBatch.INVALID_AMOUNT, PostingBatch.INVALID_AMOUNT,
+                PostingBatch.OK }, results);
+        assertEquals(0, bankAccount1.getBalanceCents());
+        assertEquals(Long.MAX_VALUE, bankAccount2.getBalanceCents());
+
+        batch.clear();
+        assertEquals(0, batch.size());
+        assertEquals(0, batch.apply().length);
+    }
+
+    @Test
+    void arraysApplyTest() {
+        BankAccount bankAccount1 = BankAccount.ofCents("a@b.com", 100);
+        BankAccount bankAccount2 = BankAccount.ofCents("b@c.com", 0);
+        BankAccount[] accounts = { bankAccount1, bankAccount2, bankAccount1, bankAccount2 };
+        long[] cents = { 30, 30, 80, 5 };
+        byte[] types = { PostingBatch.WITHDRAW, PostingBatch.DEPOSIT, PostingBatch.WITHDRAW, 9 };
+        byte[] results = new byte[4];
+
+        PostingBatch.apply(accounts, cents, types, 4, results);
+        assertArrayEquals(new byte[] { PostingBatch.OK, PostingBatch.OK, PostingBatch.INSUFFICIENT_FUNDS,
+                PostingBatch.INVALID_TYPE }, results);
+        assertEquals(70, bankAccount1.getBalanceCents());
+        assertEquals(30, bankAccount2.getBalanceCents());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> PostingBatch.apply(accounts, cents, types, 4, new byte[3])); // results too short
+    }
+
+    @Test
+    void interleavedTest() {
+        BankAccount bankAccount1 = BankAccount.ofCents("a@b.com", 0);
+        BankAccount bankAccount2 = BankAccount.ofCents("b@c.com", 10);
+        PostingBatch batch = new PostingBatch(8);
+        // each account's withdrawal only succeeds after its own deposit before it
+        batch.addDeposit(bankAccount1, 50);
+        batch.addWithdrawal(bankAccount2, 20);
+        batch.addDeposit(bankAccount2, 15);
+        batch.addWithdrawal(bankAccount1, 50); // boundary: entire balance
+        batch.addWithdrawal(bankAccount2, 25); // boundary: entire balance
+        batch.addWithdrawal(bankAccount1, 1); // boundary: just over balance
+        assertArrayEquals(new byte[] { PostingBatch.OK, PostingBatch.INSUFFICIENT_FUNDS, PostingBatch.OK,
+                PostingBatch.OK, PostingBatch.OK, PostingBatch.INSUFFICIENT_FUNDS }, batch.apply());
+        assertEquals(0, bankAccount1.getBalanceCents());
+        assertEquals(0, bankAccount2.getBalanceCents());
+
+        // many accounts, so the grouping table has collisions to probe past
+        BankAccount[] accounts = new BankAccount[1_000];
+        for (int i = 0; i < accounts.length; i++) {
+            accounts[i] = BankAccount.ofCents("user" + i + "@bank.com", 0);
+        }
+        batch.clear();
+        for (int round = 1; round <= 3; round++) {
+            for (BankAccount account : accounts) {
+                batch.addDeposit(account, round);
+            }
+        }
+        for (BankAccount account : accounts) {
+            batch.addWithdrawal(account, 6);
+        }
+        for (byte result : batch.apply()) {
+            assertEquals(PostingBatch.OK, result);
+        }
+        for (BankAccount account : accounts) {
+            assertEquals(0, account.getBalanceCents());
+        }
+        assertEquals(0, new PostingBatch(0).apply().length); // boundary: empty batch
+    }
+
+    @Test
+    void rejectedBatchTest() {
+        BankAccount bankAccount1 = BankAccount.ofCents("a@b.com", 100);
+        BankAccount bankAccount2 = BankAccount.ofCents("b@c.com", 100);
+        long[] cents = { 10, 20, 30 };
+        byte[] types = { PostingBatch.DEPOSIT, PostingBatch.WITHDRAW, PostingBatch.DEPOSIT };
+        byte[] results = new byte[3];
+
+        // a null account after valid postings rejects the whole batch
+        BankAccount[] withNull = { bankAccount1, bankAccount2, null };
+        assertThrows(NullPointerException.class, () -> PostingBatch.apply(withNull, cents, types, 3, results));
+        assertEquals(100, bankAccount1.getBalanceCents());
+        assertEquals(100, bankAccount2.getBalanceCents());
+
+        // so does a count past the end of any array
+        BankAccount[] accounts = { bankAccount1, bankAccount2 };
+        assertThrows(IllegalArgumentException.class, () -> PostingBatch.apply(accounts, cents, types, 3, results));
+        assertThrows(IllegalArgumentException.class, () -> PostingBatch.apply(accounts, cents, types, -1, results));
+        assertEquals(100, bankAccount1.getBalanceCents());
+        assertEquals(100, bankAccount2.getBalanceCents());
+        assertArrayEquals(new byte[3], results);
+    }
+
+    @Test
+    void matchesSingleCallsTest() {
+        BankAccount batched = BankAccount.ofCents("a@b.com", 500);
+        BankAccount single = BankAccount.ofCents("b@c.com", 500);
+        PostingBatch batch = new PostingBatch(16);
+        List<Byte> expected = new ArrayList<>();
+        long[] amounts = { 100, 700, 0, -3, 400, 1, 99, 1_000 };
+        for (long amount : amounts) {
+            batch.addWithdrawal(batched, amount);
+            expected.add(single.tryWithdrawCents(amount));
+            batch.addDeposit(batched, amount / 2);
+            expected.add(single.tryDepositCents(amount / 2));
+        }
+        byte[] results = batch.apply();
+        for (int i = 0; i < results.length; i++) {
+            assertEquals(expected.get(i), results[i], "posting " + i);
+        }
+        assertEquals(single.getBalanceCents(), batched.getBalanceCents());
+    }
+
+    @Test
+    void concurrentBatchesTest() throws Exception {
+        BankAccount bankAccount = BankAccount.ofCents("a@b.com", 0);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    PostingBatch batch = new PostingBatch(64);
+                    for (int n = 0; n < 5_000; n++) {
+                        batch.clear();
+                        for (int i = 0; i < 32; i++) {
+                            batch.addDeposit(bankAccount, 2);
+                            batch.addWithdrawal(bankAccount, 1);
+                        }
+                        for (byte result : batch.apply()) {
+                            assertEquals(PostingBatch.OK, result);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(8 * 5_000 * 32, bankAccount.getBalanceCents()); // no lost runs
+    }
+
+}
@@ -0,0 +1,190 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostingServiceTest {
+
+    private static Throwable failure(CompletableFuture<Void> future) {
+        ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        return e.getCause();
+    }
+
+    @Test
+    void postingTest() throws Exception {
+        Bank bank = new Bank();
+        bank.openAccountCents("a@b.com", 200);
+        bank.openAccountCents("b@c.com", 100);
+        try (PostingService service = new PostingService(bank)) {
+            service.deposit("a@b.com", 50, Durability.NONE).get();
+            service.withdraw("b@c.com", 100, Durability.NONE).get(); // boundary: entire balance
+            service.transfer("a@b.com", "b@c.com", 250, Durability.NONE).get();
+            assertEquals(0, bank.find("a@b.com").getBalanceCents());
+            assertEquals(250, bank.find("b@c.com").getBalanceCents());
+
+            // failures come back as the exception Bank throws
+            assertTrue(failure(service.withdraw("a@b.com", 1, Durability.NONE)) instanceof InsufficientFundsException);
+            assertTrue(failure(service.deposit("a@b.com", -1, Durability.NONE)) instanceof IllegalArgumentException);
+            assertTrue(failure(service.deposit("x@y.com", 1, Durability.NONE)) instanceof IllegalArgumentException);
+            assertTrue(failure(service.transfer("a@b.com", "x@y.com", 1, Durability.NONE))
+                    instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    void orderTest() throws Exception {
+        Bank bank = new Bank();
+        BankAccount bankAccount = bank.openAccountCents("a@b.com", 0);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (PostingService service = new PostingService(bank, executor, 64)) {
+            // each withdrawal only succeeds if the deposit before it already ran
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 10_000; i++) {
+                futures.add(service.deposit("a@b.com", 5, Durability.NONE));
+                futures.add(service.withdraw("a@b.com", 5, Durability.NONE));
+            }
+            for (CompletableFuture<Void> future : futures) {
+                future.get();
+            }
+            assertEquals(0, bankAccount.getBalanceCents());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentTest(@TempDir Path directory) throws Exception {
+        int clients = 8;
+        int accounts = 100;
+        try (Journal journal = new Journal(directory, 1 << 20, 200)) {
+            Bank bank = new Bank(4, 0, journal);
+            for (int i = 0; i < accounts; i++) {
+                bank.openAccountCents("user" + i + "@bank.com", 1_000);
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try (PostingService service = new PostingService(bank, executor, 16)) {
+                CountDownLatch done = new CountDownLatch(clients);
+                List<CompletableFuture<Void>> futures = Collections.synchronizedList(new ArrayList<>());
+                for (int c = 0; c < clients; c++) {
+                    int client = c;
+                    new Thread(() -> {
+                        for (int i = 0; i < 2_000; i++) {
+                            String from = "user" + (client * 31 + i) % accounts + "@bank.com";
+                            String to = "user" + (client * 17 + i * 7) % accounts + "@bank.com";
+                            Durability durability = i % 50 == 0 ? Durability.GROUP : Durability.NONE;
+                            futures.add(service.transfer(from, to, 3, durability));
+                        }
+                        done.countDown();
+                    }).start();
+                }
+                done.await();
+                for (CompletableFuture<Void> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        assertTrue(e.getCause() instanceof InsufficientFundsException);
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            long total = 0;
+            for (int i = 0; i < accounts; i++) {
+                total += bank.find("user" + i + "@bank.com").getBalanceCents();
+            }
+            assertEquals(accounts * 1_000L, total); // transfers only move money
+        }
+    }
+
+    @Test
+    void durabilityTest(@TempDir Path directory) throws Exception {
+        try (Journal journal = new Journal(directory, 1 << 20, 60_000_000)) {
+            Bank bank = new Bank(4, 0, journal);
+            bank.openAccountCents("a@b.com", 0);
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try (PostingService service = new PostingService(bank, executor, 4)) {
+                List<CompletableFuture<Void>> futures = new ArrayList<>();
+                for (int i = 0; i < 100; i++) {
+                    futures.add(service.deposit("a@b.com", 1, i % 2 == 0 ? Durability.GROUP : Durability.SYNC));
+                }
+                for (CompletableFuture<Void> future : futures) {
+                    future.get(10, TimeUnit.SECONDS);
+                }
+                // every posting answered is on disk
+                assertEquals(journal.endLsn(), journal.durableLsn());
+                assertEquals(100, bank.find("a@b.com").getBalanceCents());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    void errorTest() throws Exception {
+        Bank bank = new Bank();
+        bank.openAccountCents("a@b.com", 100);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (PostingService service = new PostingService(bank, executor, 4)) {
+            bank.setPostingCheck(new PostingCheck() {
+                @Override
+                public void check(BankAccount account, long cents, long nowNanos) {
+                    throw new AssertionError("Broken check");
+                }
+
+                @Override
+                public void debited(BankAccount account, long cents, long nowNanos) {
+                }
+            });
+            assertTrue(failure(service.withdraw("a@b.com", 1, Durability.NONE)) instanceof AssertionError);
+
+            // the mailbox still runs the account's next postings
+            bank.setPostingCheck(null);
+            service.withdraw("a@b.com", 1, Durability.NONE).get(10, TimeUnit.SECONDS);
+            service.deposit("a@b.com", 1, Durability.NONE).get(10, TimeUnit.SECONDS);
+            assertEquals(100, bank.find("a@b.com").getBalanceCents());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void closeTest() throws Exception {
+        Bank bank = new Bank();
+        bank.openAccountCents("a@b.com", 0);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        PostingService service = new PostingService(bank, executor, 4);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            futures.add(service.deposit("a@b.com", 1, Durability.NONE));
+        }
+        service.close(); // waits for everything submitted
+        for (CompletableFuture<Void> future : futures) {
+            assertTrue(future.isDone());
+        }
+        assertEquals(1_000, bank.find("a@b.com").getBalanceCents());
+        assertTrue(failure(service.deposit("a@b.com", 1, Durability.NONE)) instanceof RejectedExecutionException);
+        assertFalse(executor.isShutdown()); // not the service's to shut down
+
+        // an executor shut down under the service fails postings instead of losing them
+        executor.shutdown();
+        PostingService orphaned = new PostingService(bank, executor, 4);
+        assertTrue(failure(orphaned.deposit("a@b.com", 1, Durability.NONE)) instanceof RejectedExecutionException);
+        orphaned.close();
+
+        assertThrows(IllegalArgumentException.class, () -> new PostingService(bank, executor, 0));
+    }
+
+}
@@ -0,0 +1,213 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    private static long countFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void writeReadTest() throws IOException {
+        try (Snapshot.Writer writer = new Snapshot.Writer(directory, 1234, 2)) {
+            writer.add("a@b.com", 200);
+            writer.add("é@ü.de", Long.MAX_VALUE);
+            assertNull(Snapshot.latest(directory)); // nothing visible before commit
+            writer.commit();
+        }
+        Path latest = Snapshot.latest(directory);
+        try (Snapshot.Reader reader = new Snapshot.Reader(latest)) {
+            assertEquals(1234, reader.cutLsn());
+            assertEquals(2, reader.accountHint());
+            assertTrue(reader.next());
+            assertEquals("a@b.com", reader.email());
+            assertEquals(200, reader.cents());
+            assertTrue(reader.next());
+            assertEquals("é@ü.de", reader.email());
+            assertEquals(Long.MAX_VALUE, reader.cents());
+            assertFalse(reader.next());
+        }
+
+        // a newer snapshot replaces the older one
+        try (Snapshot.Writer writer = new Snapshot.Writer(directory, 5678, 0)) { // boundary: no accounts
+            writer.commit();
+        }
+        assertEquals(1, countFiles(directory));
+        try (Snapshot.Reader reader = new Snapshot.Reader(Snapshot.latest(directory))) {
+            assertEquals(5678, reader.cutLsn());
+            assertFalse(reader.next());
+        }
+
+        // an abandoned writer leaves nothing behind
+        try (Snapshot.Writer writer = new Snapshot.Writer(directory, 9999, 1)) {
+            writer.add("a@b.com", 1);
+        }
+        assertEquals(1, countFiles(directory));
+        assertNull(Snapshot.latest(directory.resolve("missing")));
+    }
+
+    @Test
+    void corruptTest() throws IOException {
+        try (Snapshot.Writer writer = new Snapshot.Writer(directory, 0, 1)) {
+            writer.add("a@b.com", 200);
+            writer.commit();
+        }
+        Path latest = Snapshot.latest(directory);
+        try (FileChannel channel = FileChannel.open(latest, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 9 }), 30); // inside the balance
+        }
+        assertThrows(IOException.class, () -> {
+            try (Snapshot.Reader reader = new Snapshot.Reader(latest)) {
+                while (reader.next()) {
+                    // read to the checksum
+                }
+            }
+        });
+        try (Journal journal = new Journal(directory.resolve("journal"), 4096, 1_000)) {
+            assertThrows(IOException.class, () -> Bank.recover(journal, directory));
+        }
+    }
+
+    @Test
+    void checkpointRecoverTest() throws IOException, InsufficientFundsException {
+        Path journalDirectory = directory.resolve("journal");
+        Path snapshotDirectory = directory.resolve("snapshots");
+        try (Journal journal = new Journal(journalDirectory, 1024, 1_000)) {
+            Bank bank = new Bank(4, 0, journal);
+            for (int i = 0; i < 100; i++) {
+                bank.openAccountCents("user" + i + "@bank.com", i);
+            }
+            long segments = countFiles(journalDirectory);
+            assertTrue(segments > 2);
+            long cut = bank.checkpoint(snapshotDirectory);
+            assertEquals(journal.endLsn(), cut);
+            assertTrue(countFiles(journalDirectory) < segments); // covered segments are dropped
+
+            // changes after the checkpoint come from the journal
+            bank.deposit(bank.find("user1@bank.com"), 1000, Durability.NONE);
+            bank.transfer(bank.find("user99@bank.com"), bank.find("user2@bank.com"), 99, Durability.NONE);
+            bank.openAccountCents("new@bank.com", 5);
+        }
+        try (Journal journal = new Journal(journalDirectory, 1024, 1_000)) {
+            Bank bank = Bank.recover(journal, snapshotDirectory);
+            assertEquals(101, bank.size());
+            assertEquals(1001, bank.find("user1@bank.com").getBalanceCents());
+            assertEquals(101, bank.find("user2@bank.com").getBalanceCents());
+            assertEquals(0, bank.find("user99@bank.com").getBalanceCents());
+            assertEquals(5, bank.find("new@bank.com").getBalanceCents());
+            assertEquals(50, bank.find("user50@bank.com").getBalanceCents());
+
+            bank.checkpoint(snapshotDirectory); // a second checkpoint of a recovered bank
+            bank.withdraw(bank.find("new@bank.com"), 5, Durability.NONE);
+        }
+        try (Journal journal = new Journal(journalDirectory, 1024, 1_000)) {
+            Bank bank = Bank.recover(journal, snapshotDirectory);
+            assertEquals(0, bank.find("new@bank.com").getBalanceCents());
+            assertEquals(1001, bank.find("user1@bank.com").getBalanceCents());
+        }
+
+        // a recovered bank can keep a history, for accounts from the snapshot and the journal alike
+        try (Journal journal = new Journal(journalDirectory, 1024, 1_000)) {
+            TransactionHistory history = new TransactionHistory(4);
+            Bank bank = Bank.recover(journal, snapshotDirectory, 8, history);
+            TransactionHistory.Entries entries = history.newEntries();
+            assertEquals(0, history.read(bank.find("user1@bank.com"), entries)); // boundary: starts empty
+            bank.deposit(bank.find("user1@bank.com"), 7, Durability.NONE);
+            bank.deposit(bank.find("new@bank.com"), 3, Durability.NONE);
+            assertEquals(1, history.read(bank.find("user1@bank.com"), entries));
+            assertEquals(7, entries.cents(0));
+            assertEquals(1, history.read(bank.find("new@bank.com"), entries));
+            assertEquals(3, entries.cents(0));
+        }
+    }
+
+    @Test
+    void concurrentCheckpointTest() throws Exception {
+        Path journalDirectory = directory.resolve("journal");
+        Path snapshotDirectory = directory.resolve("snapshots");
+        int threads = 8;
+        long[] expected = new long[threads];
+        try (Journal journal = new Journal(journalDirectory, 1 << 14, 200)) {
+            Bank bank = new Bank(4, 0, journal);
+            for (int t = 0; t < threads; t++) {
+                bank.openAccountCents("user" + t + "@bank.com", 1_000);
+            }
+            AtomicBoolean running = new AtomicBoolean(true);
+            ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    BankAccount mine = bank.find("user" + t + "@bank.com");
+                    BankAccount next = bank.find("user" + (t + 1) % threads + "@bank.com");
+                    int id = t;
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < 3_000; i++) {
+                            bank.deposit(mine, 3, Durability.NONE);
+                            try {
+                                bank.transfer(mine, next, 5, Durability.NONE);
+                            } catch (InsufficientFundsException e) {
+                                // fine, balances are random walks
+                            }
+                            if (i % 500 == 0) {
+                                bank.openAccountCents("user" + id + "-" + i + "@bank.com", i);
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                // checkpoints keep being taken while postings run
+                Future<?> checkpoints = executor.submit(() -> {
+                    while (running.get()) {
+                        bank.checkpoint(snapshotDirectory);
+                    }
+                    return null;
+                });
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                running.set(false);
+                checkpoints.get();
+            } finally {
+                executor.shutdownNow();
+            }
+            for (int t = 0; t < threads; t++) {
+                expected[t] = bank.find("user" + t + "@bank.com").getBalanceCents();
+            }
+            assertEquals(threads + threads * 6, bank.size());
+        }
+        try (Journal journal = new Journal(journalDirectory, 1 << 14, 200)) {
+            Bank bank = Bank.recover(journal, snapshotDirectory);
+            assertEquals(threads + threads * 6, bank.size());
+            long total = 0;
+            for (int t = 0; t < threads; t++) {
+                assertEquals(expected[t], bank.find("user" + t + "@bank.com").getBalanceCents());
+                total += expected[t];
+            }
+            assertEquals(threads * (1_000 + 3 * 3_000), total); // no money made or lost
+            assertEquals(2_500, bank.find("user3-2500@bank.com").getBalanceCents());
+        }
+    }
+
+}
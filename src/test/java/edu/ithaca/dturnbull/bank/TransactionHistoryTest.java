@@ -0,0 +1,127 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionHistoryTest {
+
+    @Test
+    void recordReadTest() throws InsufficientFundsException {
+        TransactionHistory history = new TransactionHistory(4);
+        Bank bank = new Bank(4, 0, null, history);
+        BankAccount bankAccount1 = bank.openAccountCents("a@b.com", 1_000);
+        BankAccount bankAccount2 = bank.openAccountCents("b@c.com", 0);
+        TransactionHistory.Entries entries = history.newEntries();
+
+        assertEquals(0, history.read(bankAccount1, entries)); // boundary: no postings yet
+
+        long before = System.currentTimeMillis();
+        bank.deposit(bankAccount1, 50, Durability.NONE);
+        bank.withdraw(bankAccount1, 25, Durability.NONE);
+        bank.transfer(bankAccount1, bankAccount2, 100, Durability.NONE);
+        assertThrows(InsufficientFundsException.class,
+                () -> bank.withdraw(bankAccount2, 101, Durability.NONE)); // rejected, not recorded
+
+        assertEquals(3, history.read(bankAccount1, entries));
+        assertEquals(TransactionHistory.DEPOSIT, entries.type(0));
+        assertEquals(50, entries.cents(0));
+        assertNull(entries.counterparty(0));
+        assertTrue(entries.timestampMillis(0) >= before);
+        assertEquals(TransactionHistory.WITHDRAWAL, entries.type(1));
+        assertEquals(25, entries.cents(1));
+        assertEquals(TransactionHistory.TRANSFER_OUT, entries.type(2));
+        assertSame(bankAccount2, entries.counterparty(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> entries.cents(3));
+
+        assertEquals(1, history.read(bankAccount2, entries));
+        assertEquals(TransactionHistory.TRANSFER_IN, entries.type(0));
+        assertEquals(100, entries.cents(0));
+        assertSame(bankAccount1, entries.counterparty(0));
+    }
+
+    @Test
+    void wrapTest() {
+        TransactionHistory history = new TransactionHistory(4);
+        Bank bank = new Bank(4, 0, null, history);
+        BankAccount bankAccount = bank.openAccountCents("a@b.com", 0);
+        TransactionHistory.Entries entries = history.newEntries();
+        for (int i = 1; i <= 10; i++) {
+            bank.deposit(bankAccount, i, Durability.NONE);
+        }
+        assertEquals(4, history.read(bankAccount, entries)); // only the newest depth entries
+        for (int i = 0; i < 4; i++) {
+            assertEquals(7 + i, entries.cents(i));
+        }
+    }
+
+    @Test
+    void manyAccountsTest() {
+        TransactionHistory history = new TransactionHistory(2);
+        Bank bank = new Bank(4, 0, null, history);
+        // enough accounts to need several pages
+        for (int i = 0; i < 500_000; i++) {
+            bank.openAccountCents("user" + i + "@bank.com", 0);
+        }
+        BankAccount last = bank.find("user499999@bank.com");
+        bank.deposit(last, 7, Durability.NONE);
+        TransactionHistory.Entries entries = history.newEntries();
+        assertEquals(1, history.read(last, entries));
+        assertEquals(7, entries.cents(0));
+        assertEquals(0, history.read(bank.find("user0@bank.com"), entries));
+    }
+
+    @Test
+    void invalidTest() {
+        assertThrows(IllegalArgumentException.class, () -> new TransactionHistory(0));
+        assertThrows(IllegalArgumentException.class, () -> new TransactionHistory(5_000));
+
+        TransactionHistory history = new TransactionHistory(4);
+        Bank bank = new Bank(4, 0, null, history);
+        bank.openAccountCents("a@b.com", 0);
+        BankAccount stranger = BankAccount.ofCents("a@b.com", 0); // not in the bank
+        assertThrows(IllegalArgumentException.class, () -> history.read(stranger, history.newEntries()));
+        assertThrows(IllegalArgumentException.class,
+                () -> history.read(bank.find("a@b.com"), new TransactionHistory(2).newEntries())); // too small
+        assertNull(new Bank().history());
+        assertSame(history, bank.history());
+    }
+
+    @Test
+    void concurrentReadTest() throws Exception {
+        TransactionHistory history = new TransactionHistory(8);
+        Bank bank = new Bank(4, 0, null, history);
+        BankAccount bankAccount = bank.openAccountCents("a@b.com", 0);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            TransactionHistory.Entries entries = history.newEntries();
+            long newest = 0;
+            while (running.get()) {
+                int size = history.read(bankAccount, entries);
+                // deposits are 1, 2, 3, ... so a consistent copy is consecutive and never goes back
+                for (int i = 1; i < size; i++) {
+                    if (entries.cents(i) != entries.cents(i - 1) + 1) {
+                        failure.set("not consecutive at " + entries.cents(i));
+                    }
+                }
+                if (size > 0) {
+                    if (entries.cents(size - 1) < newest) {
+                        failure.set("went back to " + entries.cents(size - 1));
+                    }
+                    newest = entries.cents(size - 1);
+                }
+            }
+        });
+        reader.start();
+        for (int i = 1; i <= 500_000; i++) {
+            bank.deposit(bankAccount, i, Durability.NONE);
+        }
+        running.set(false);
+        reader.join();
+        assertNull(failure.get());
+    }
+
+}
@@ -0,0 +1,112 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferEngineTest {
+
+    @Test
+    void transferTest() throws InsufficientFundsException {
+        TransferEngine engine = new TransferEngine(16);
+        BankAccount bankAccount1 = BankAccount.ofCents("a@b.com", 200);
+        BankAccount bankAccount2 = BankAccount.ofCents("b@c.com", 100);
+
+        engine.transfer(bankAccount1, bankAccount2, 50); // not boundary: valid transfer
+        assertEquals(150, bankAccount1.getBalanceCents());
+        assertEquals(150, bankAccount2.getBalanceCents());
+
+        engine.transfer(bankAccount1, bankAccount2, 150); // boundary: entire balance
+        assertEquals(0, bankAccount1.getBalanceCents());
+        assertEquals(300, bankAccount2.getBalanceCents());
+
+        assertThrows(InsufficientFundsException.class, () -> engine.transfer(bankAccount1, bankAccount2, 1));
+        assertThrows(IllegalArgumentException.class, () -> engine.transfer(bankAccount2, bankAccount1, 0));
+        assertThrows(IllegalArgumentException.class, () -> engine.transfer(bankAccount2, bankAccount1, -1));
+        assertArrayEquals(new long[] { 0, 300 }, engine.balancesCents(bankAccount1, bankAccount2)); // unchanged
+    }
+
+    @Test
+    void overflowLeavesNothingMovedTest() throws InsufficientFundsException {
+        TransferEngine engine = new TransferEngine(16);
+        BankAccount bankAccount1 = BankAccount.ofCents("a@b.com", 200);
+        BankAccount bankAccount2 = BankAccount.ofCents("b@c.com", Long.MAX_VALUE);
+
+        // deposit throws after the withdrawal, the money must come back
+        assertThrows(ArithmeticException.class, () -> engine.transfer(bankAccount1, bankAccount2, 100));
+        assertEquals(200, bankAccount1.getBalanceCents());
+        assertEquals(Long.MAX_VALUE, bankAccount2.getBalanceCents());
+
+        assertThrows(ArithmeticException.class, () -> bankAccount1.transfer(bankAccount2, 1)); // through BankAccount
+        assertEquals(200, bankAccount1.getBalanceCents());
+    }
+
+    @Test
+    void multiLegTransferTest() throws InsufficientFundsException {
+        TransferEngine engine = new TransferEngine(16);
+        BankAccount a = BankAccount.ofCents("a@b.com", 100);
+        BankAccount b = BankAccount.ofCents("b@c.com", 0);
+        BankAccount c = BankAccount.ofCents("c@d.com", 0);
+
+        // b passes on what it receives in the same call
+        engine.transfer(new BankAccount[] { a, b }, new BankAccount[] { b, c }, new long[] { 100, 60 });
+        assertArrayEquals(new long[] { 0, 40, 60 }, engine.balancesCents(a, b, c));
+
+        // the second leg cannot be paid, so neither happens
+        assertThrows(InsufficientFundsException.class, () -> engine.transfer(new BankAccount[] { c, b },
+                new BankAccount[] { a, a }, new long[] { 60, 41 }));
+        assertArrayEquals(new long[] { 0, 40, 60 }, engine.balancesCents(a, b, c));
+
+        assertThrows(IllegalArgumentException.class, () -> engine.transfer(new BankAccount[] { a },
+                new BankAccount[] { b, c }, new long[] { 1 })); // mismatched legs
+        assertThrows(IllegalArgumentException.class, () -> engine.transfer(new BankAccount[] { c },
+                new BankAccount[] { a }, new long[] { 0 })); // zero leg
+    }
+
+    @Test
+    void opposingTransfersTest() throws Exception {
+        // With few stripes both directions contend for the same locks
+        TransferEngine engine = new TransferEngine(2);
+        BankAccount a = BankAccount.ofCents("a@b.com", 1_000);
+        BankAccount b = BankAccount.ofCents("b@c.com", 1_000);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                BankAccount from = i % 2 == 0 ? a : b;
+                BankAccount to = i % 2 == 0 ? b : a;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < 50_000; j++) {
+                        try {
+                            engine.transfer(from, to, 7);
+                        } catch (InsufficientFundsException e) {
+                            // fine, the other direction will refill it
+                        }
+                        long[] balances = engine.balancesCents(a, b);
+                        assertEquals(2_000, balances[0] + balances[1]); // money is always in one account
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS); // a deadlock would time out here
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(2_000, a.getBalanceCents() + b.getBalanceCents());
+        assertTrue(a.getBalanceCents() >= 0 && b.getBalanceCents() >= 0);
+    }
+
+}
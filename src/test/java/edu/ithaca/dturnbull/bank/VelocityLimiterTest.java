@@ -0,0 +1,169 @@
+package edu.ithaca.dturnbull.bank;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class VelocityLimiterTest {
+
+    private static final long MILLI = 1_000_000;
+
+    @Test
+    void limitTest() {
+        // 10 buckets of 100 ms
+        VelocityLimiter limiter = new VelocityLimiter(1_000, 10, 1_000, 3);
+        BankAccount account = BankAccount.ofCents("a@b.com", 0);
+        limiter.check(account, 1_000, 0); // boundary: the whole limit at once
+        limiter.check(account, 400, 0);
+        limiter.debited(account, 400, 0);
+        limiter.check(account, 600, 50 * MILLI); // boundary: up to the limit
+        assertThrows(PostingRefusedException.class, () -> limiter.check(account, 601, 50 * MILLI));
+        limiter.debited(account, 100, 150 * MILLI);
+        limiter.debited(account, 100, 250 * MILLI);
+        assertThrows(PostingRefusedException.class, () -> limiter.check(account, 1, 250 * MILLI)); // 3 debits
+
+        // accounts are limited separately
+        BankAccount other = BankAccount.ofCents("b@c.com", 0);
+        limiter.check(other, 1_000, 250 * MILLI);
+    }
+
+    @Test
+    void windowTest() {
+        VelocityLimiter limiter = new VelocityLimiter(1_000, 10, 1_000, 100);
+        BankAccount account = BankAccount.ofCents("a@b.com", 0);
+        limiter.debited(account, 600, 0);
+        limiter.debited(account, 300, 500 * MILLI);
+        assertThrows(PostingRefusedException.class, () -> limiter.check(account, 101, 999 * MILLI));
+        // the first bucket leaves the window a second after it started
+        limiter.check(account, 700, 1_000 * MILLI);
+        assertThrows(PostingRefusedException.class, () -> limiter.check(account, 701, 1_000 * MILLI));
+        limiter.debited(account, 700, 1_000 * MILLI); // reuses the first bucket
+        assertThrows(PostingRefusedException.class, () -> limiter.check(account, 1, 1_499 * MILLI));
+        limiter.check(account, 300, 1_500 * MILLI);
+        // long idle: everything expired
+        limiter.check(account, 1_000, 60_000 * MILLI);
+        // clocks may be negative
+        BankAccount other = BankAccount.ofCents("b@c.com", 0);
+        limiter.debited(other, 1_000, -5 * MILLI);
+        assertThrows(PostingRefusedException.class, () -> limiter.check(other, 1, 0));
+        limiter.check(other, 1_000, 995 * MILLI);
+
+        assertThrows(IllegalArgumentException.class, () -> new VelocityLimiter(0, 10, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new VelocityLimiter(1_000, 0, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new VelocityLimiter(1_000, 10, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new VelocityLimiter(1_000, 10, 1, 0));
+    }
+
+    @Test
+    void bankTest() throws InsufficientFundsException {
+        Bank bank = new Bank();
+        BankAccount a = bank.openAccountCents("a@b.com", 10_000);
+        BankAccount b = bank.openAccountCents("b@c.com", 0);
+        bank.setPostingCheck(new VelocityLimiter(60_000, 60, 1_000, 100));
+        bank.withdraw(a, 600, Durability.NONE);
+        assertThrows(InsufficientFundsException.class, () -> bank.withdraw(b, 1, Durability.NONE));
+        assertThrows(PostingRefusedException.class, () -> bank.transfer(a, b, 401, Durability.NONE));
+        assertEquals(9_400, a.getBalanceCents()); // refused postings move nothing
+        assertEquals(0, b.getBalanceCents());
+        bank.transfer(a, b, 400, Durability.NONE);
+        assertThrows(PostingRefusedException.class, () -> bank.withdraw(a, 1, Durability.NONE));
+        assertThrows(IllegalArgumentException.class, () -> bank.withdraw(a, 0, Durability.NONE));
+        bank.deposit(a, 1, Durability.NONE); // deposits are not checked
+
+        // failed debits do not count
+        assertThrows(InsufficientFundsException.class, () -> bank.transfer(b, a, 401, Durability.NONE));
+        bank.transfer(b, a, 400, Durability.NONE);
+        assertEquals(9_401, a.getBalanceCents());
+
+        bank.setPostingCheck(null);
+        bank.withdraw(a, 5_000, Durability.NONE);
+        assertEquals(4_401, a.getBalanceCents());
+    }
+
+    @Test
+    void swapTest() throws InsufficientFundsException {
+        Bank bank = new Bank();
+        BankAccount a = bank.openAccountCents("a@b.com", 10_000);
+        BankAccount b = bank.openAccountCents("b@c.com", 10_000);
+        VelocityLimiter first = new VelocityLimiter(60_000, 60, 1_000, 100);
+        bank.setPostingCheck(first);
+        bank.withdraw(a, 900, Durability.NONE);
+        bank.withdraw(b, 100, Durability.NONE);
+
+        // a new limiter starts from nothing for accounts the old one knew
+        VelocityLimiter second = new VelocityLimiter(60_000, 60, 500, 100);
+        bank.setPostingCheck(second);
+        bank.withdraw(b, 500, Durability.NONE); // boundary: the new limit
+        assertThrows(PostingRefusedException.class, () -> bank.withdraw(b, 1, Durability.NONE));
+        bank.withdraw(a, 300, Durability.NONE);
+
+        // limiters used side by side keep their own counts
+        bank.setPostingCheck(first);
+        bank.withdraw(a, 100, Durability.NONE); // 1000 within the first limit
+        assertThrows(PostingRefusedException.class, () -> bank.withdraw(a, 1, Durability.NONE));
+        long now = System.nanoTime();
+        second.check(a, 200, now);
+        assertThrows(PostingRefusedException.class, () -> second.check(a, 201, now));
+    }
+
+    @Test
+    void metricsTest() {
+        Metrics.setEnabled(true);
+        try {
+            Metrics.reset();
+            Bank bank = new Bank();
+            BankAccount a = bank.openAccountCents("a@b.com", 100);
+            bank.setPostingCheck(new VelocityLimiter(1_000, 1, 50, 1));
+            assertThrows(PostingRefusedException.class, () -> bank.withdraw(a, 51, Durability.NONE));
+            assertEquals(1, Metrics.rejections(Metrics.Operation.WITHDRAW, Metrics.Reason.REFUSED));
+            assertEquals(1, Metrics.count(Metrics.Operation.WITHDRAW));
+        } finally {
+            Metrics.reset();
+            Metrics.setEnabled(false);
+        }
+    }
+
+    @Test
+    void concurrentTest() throws InterruptedException {
+        int threads = 8;
+        int accounts = 50;
+        Bank bank = new Bank();
+        List<BankAccount> list = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            list.add(bank.openAccountCents("user" + i + "@bank.com", 1_000_000));
+        }
+        // a window longer than the test, so nothing expires
+        bank.setPostingCheck(new VelocityLimiter(3_600_000, 16, 1_000, 1_000));
+        AtomicLong withdrawn = new AtomicLong();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    BankAccount account = list.get((seed * 7 + i) % accounts);
+                    try {
+                        if (i % 2 == 0) {
+                            bank.withdraw(account, 7, Durability.NONE);
+                        } else {
+                            bank.transfer(account, list.get((seed * 7 + i + 1) % accounts), 7, Durability.NONE);
+                        }
+                        withdrawn.addAndGet(7);
+                    } catch (PostingRefusedException | InsufficientFundsException e) {
+                        // expected once the limit is reached
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        // every account reached its limit and none went over: 142 debits of 7 fit in 1000
+        assertEquals(accounts * 142L * 7, withdrawn.get());
+    }
+
+}